@@ -16,10 +16,13 @@
 
 package com.rackspace.salus.policy.manage.config;
 
+import com.rackspace.salus.policy.manage.repositories.MonitorPolicyLookupRepository;
 import com.rackspace.salus.telemetry.EnableSalusJpa;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 @EnableSalusJpa
+@EnableJpaRepositories(basePackageClasses = MonitorPolicyLookupRepository.class)
 @Configuration
 public class DatabaseConfig {
 
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import com.rackspace.salus.telemetry.entities.Policy;
+import com.rackspace.salus.telemetry.entities.TenantMetadata;
+import java.util.List;
+import javax.cache.CacheManager;
+import lombok.extern.slf4j.Slf4j;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configures the Hibernate second-level and query caches for the policy entities.
+ *
+ * <p>
+ *   The cache regions live in the same JCache manager as the application's other caches.
+ *   Entities are cached read-write, so any change made through this service replaces the cached
+ *   entry on commit, and the query caches are invalidated whenever the policies or tenant
+ *   metadata tables are written to.
+ * </p>
+ * <p>
+ *   When no JCache manager is available, such as in sliced tests, the second-level cache is
+ *   left disabled.
+ * </p>
+ */
+@Configuration
+@EnableCaching
+@Slf4j
+public class HibernateCacheConfig {
+
+  /**
+   * Query cache region for the lookups of policies by scope or key.
+   */
+  public static final String REGION_POLICY_QUERIES = "policymgmt_policy_queries";
+  /**
+   * Query cache region for the lookups of tenant metadata.
+   */
+  public static final String REGION_TENANT_METADATA_QUERIES = "policymgmt_tenant_metadata_queries";
+
+  // the regions hibernate uses by default for the query cache
+  static final String REGION_DEFAULT_QUERY_RESULTS = "default-query-results-region";
+  static final String REGION_UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+  private static final List<Class<?>> CACHED_ENTITIES = List.of(Policy.class, TenantMetadata.class);
+
+  private final PolicyCacheProperties properties;
+
+  public HibernateCacheConfig(PolicyCacheProperties properties) {
+    this.properties = properties;
+  }
+
+  @Bean
+  public JCacheManagerCustomizer hibernateCacheCustomizer() {
+    return cacheManager -> {
+      for (Class<?> entity : CACHED_ENTITIES) {
+        cacheManager.createCache(entity.getName(), boundedCacheConfig(properties.getEntitiesMaxSize()));
+      }
+      cacheManager.createCache(REGION_POLICY_QUERIES, boundedCacheConfig(properties.getQueriesMaxSize()));
+      cacheManager.createCache(REGION_TENANT_METADATA_QUERIES, boundedCacheConfig(properties.getQueriesMaxSize()));
+      cacheManager.createCache(REGION_DEFAULT_QUERY_RESULTS, boundedCacheConfig(properties.getQueriesMaxSize()));
+      // update timestamps must never be evicted before the query results that depend on them
+      cacheManager.createCache(REGION_UPDATE_TIMESTAMPS, Eh107Configuration.fromEhcacheCacheConfiguration(
+          CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+              ResourcePoolsBuilder.heap(100)
+          )
+          .withExpiry(ExpiryPolicyBuilder.noExpiration())
+      ));
+    };
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer hibernateCacheProperties(ObjectProvider<CacheManager> cacheManager) {
+    return hibernateProperties -> {
+      final CacheManager manager = cacheManager.getIfAvailable();
+      if (manager == null) {
+        log.info("No JCache manager is available, the hibernate second-level cache is disabled");
+        hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+        hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, false);
+        return;
+      }
+
+      hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+      hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, true);
+      hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+      hibernateProperties.put(ConfigSettings.CACHE_MANAGER, manager);
+      // the concrete policy types share the region of their root entity
+      for (Class<?> entity : CACHED_ENTITIES) {
+        hibernateProperties.put(AvailableSettings.CLASS_CACHE_PREFIX + "." + entity.getName(), "read-write");
+      }
+    };
+  }
+
+  private javax.cache.configuration.Configuration<Object, Object> boundedCacheConfig(long maxSize) {
+    return Eh107Configuration.fromEhcacheCacheConfiguration(
+        CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+            ResourcePoolsBuilder.heap(maxSize)
+        )
+        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(properties.getTtl()))
+    );
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.function.ToLongFunction;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the hit ratios of the hibernate second-level and query caches.
+ * The ratios are only populated when <code>hibernate.generate_statistics</code> is enabled.
+ */
+@Component
+public class HibernateCacheMetrics {
+
+  static final String METRIC_CACHE_HIT_RATIO = "policy_mgmt.cache.hit.ratio";
+
+  public HibernateCacheMetrics(EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry) {
+    final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    registerHitRatio(meterRegistry, statistics, "second-level",
+        Statistics::getSecondLevelCacheHitCount, Statistics::getSecondLevelCacheMissCount);
+    registerHitRatio(meterRegistry, statistics, "query",
+        Statistics::getQueryCacheHitCount, Statistics::getQueryCacheMissCount);
+  }
+
+  private static void registerHitRatio(MeterRegistry meterRegistry, Statistics statistics,
+      String cache, ToLongFunction<Statistics> hits, ToLongFunction<Statistics> misses) {
+    Gauge.builder(METRIC_CACHE_HIT_RATIO, statistics, s -> hitRatio(hits.applyAsLong(s), misses.applyAsLong(s)))
+        .tag("cache", cache)
+        .register(meterRegistry);
+  }
+
+  private static double hitRatio(long hits, long misses) {
+    final long requests = hits + misses;
+    return requests == 0 ? Double.NaN : (double) hits / requests;
+  }
+}
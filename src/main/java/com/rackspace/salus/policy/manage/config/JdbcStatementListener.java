@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Counts the JDBC statements executed by hibernate sessions and the time spent executing them.
+ *
+ * <p>
+ *   Hibernate creates an instance of this listener for each session. The statements are only
+ *   counted on threads where {@link #begin()} was called, such as those handling a web request,
+ *   and accumulate until {@link #end()} is called on the same thread.
+ * </p>
+ */
+public class JdbcStatementListener extends BaseSessionEventListener {
+
+  private static final ThreadLocal<Counts> current = new ThreadLocal<>();
+
+  private long statementStart;
+  private long batchStart;
+
+  /**
+   * Starts counting the statements executed by the current thread.
+   */
+  public static void begin() {
+    current.set(new Counts());
+  }
+
+  /**
+   * Stops counting the statements executed by the current thread.
+   *
+   * @return The statements counted since {@link #begin()}, or null if it was not called.
+   */
+  public static Counts end() {
+    final Counts counts = current.get();
+    current.remove();
+    return counts;
+  }
+
+  /**
+   * Gets the running counts of the current thread without stopping them.
+   *
+   * @return The statements counted so far, or null if {@link #begin()} was not called.
+   */
+  public static Counts current() {
+    return current.get();
+  }
+
+  @Override
+  public void jdbcExecuteStatementStart() {
+    statementStart = System.nanoTime();
+  }
+
+  @Override
+  public void jdbcExecuteStatementEnd() {
+    record(statementStart);
+  }
+
+  @Override
+  public void jdbcExecuteBatchStart() {
+    batchStart = System.nanoTime();
+  }
+
+  @Override
+  public void jdbcExecuteBatchEnd() {
+    record(batchStart);
+  }
+
+  private static void record(long start) {
+    final Counts counts = current.get();
+    if (counts != null) {
+      counts.statements++;
+      counts.nanos += System.nanoTime() - start;
+    }
+  }
+
+  public static class Counts {
+    int statements;
+    long nanos;
+
+    public int getStatements() {
+      return statements;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+  }
+}
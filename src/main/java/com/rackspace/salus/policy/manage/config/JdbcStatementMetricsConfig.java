@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers the {@link JdbcStatementListener} with every hibernate session and the
+ * interceptor that publishes its counts for each web request.
+ */
+@Configuration
+public class JdbcStatementMetricsConfig implements WebMvcConfigurer {
+
+  private final PolicyManagementMetrics policyManagementMetrics;
+
+  public JdbcStatementMetricsConfig(PolicyManagementMetrics policyManagementMetrics) {
+    this.policyManagementMetrics = policyManagementMetrics;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer jdbcStatementListenerProperties() {
+    return hibernateProperties -> hibernateProperties.put(
+        AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, JdbcStatementListener.class.getName());
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(new JdbcStatementMetricsInterceptor(policyManagementMetrics))
+        .addPathPatterns("/api/**");
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Publishes the number of JDBC statements and the database time of each web request,
+ * tagged by the pattern of the request mapping.
+ */
+public class JdbcStatementMetricsInterceptor implements AsyncHandlerInterceptor {
+
+  private final PolicyManagementMetrics policyManagementMetrics;
+
+  public JdbcStatementMetricsInterceptor(PolicyManagementMetrics policyManagementMetrics) {
+    this.policyManagementMetrics = policyManagementMetrics;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) {
+    // the dispatch that completes an async request is not counted as a request of its own
+    if (request.getDispatcherType() != DispatcherType.ASYNC) {
+      JdbcStatementListener.begin();
+    }
+    return true;
+  }
+
+  @Override
+  public void afterConcurrentHandlingStarted(HttpServletRequest request,
+      HttpServletResponse response, Object handler) {
+    // the request continues on another thread, so only the statements so far are recorded
+    record(request);
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+      Object handler, Exception ex) {
+    record(request);
+  }
+
+  private void record(HttpServletRequest request) {
+    final JdbcStatementListener.Counts counts = JdbcStatementListener.end();
+    final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    if (counts != null && pattern != null) {
+      policyManagementMetrics.requestStatements(pattern.toString(), counts.statements, counts.nanos);
+    }
+  }
+}
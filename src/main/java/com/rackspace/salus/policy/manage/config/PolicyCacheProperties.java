@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import javax.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationUnit;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("salus.policy.cache")
+@Component
+@Data
+@Validated
+public class PolicyCacheProperties {
+
+  /**
+   * Maximum number of policy and tenant metadata entities held in the second-level cache.
+   */
+  @Min(1)
+  long entitiesMaxSize = 10_000;
+
+  /**
+   * Maximum number of query results held in each query cache region.
+   */
+  @Min(1)
+  long queriesMaxSize = 10_000;
+
+  /**
+   * Duration to expire cached entities and query results after creation.
+   * Writes made through this service invalidate the cache immediately, so this only bounds
+   * how long changes made directly in the database remain unseen.
+   */
+  @DurationUnit(ChronoUnit.MINUTES)
+  Duration ttl = Duration.ofMinutes(10);
+}
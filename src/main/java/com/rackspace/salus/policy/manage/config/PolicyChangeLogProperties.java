@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import javax.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("salus.policy.change-log")
+@Component
+@Data
+@Validated
+public class PolicyChangeLogProperties {
+
+  /**
+   * Maximum number of changes retained per partition of the policies topic for effective policy
+   * delta requests. Each change affects one tenant, so a policy applied to many tenants uses many
+   * entries. Clients asking for changes older than the retained ones are sent their full policy
+   * set.
+   */
+  @Min(1)
+  int maxEntries = 10_000;
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import com.rackspace.salus.policy.manage.services.PolicyEventHandlers;
+import com.rackspace.salus.policy.manage.services.TypeHeaderFilteringDeserializer;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties.AckMode;
+
+/**
+ * Configures the listener container of the policy events consumed by this service, which
+ * discards the records of unhandled event types before they are deserialized.
+ * The events are consumed in batches, one per poll, by the configured number of consumers.
+ * No offsets are committed, since each replica consumes in a group of its own that is never
+ * reused once the replica stops.
+ */
+@Configuration
+public class PolicyEventListenerConfig {
+
+  public static final String CONTAINER_FACTORY = "policyEventListenerContainerFactory";
+
+  @Bean(CONTAINER_FACTORY)
+  public ConcurrentKafkaListenerContainerFactory<String, Object> policyEventListenerContainerFactory(
+      KafkaProperties kafkaProperties, PolicyEventListenerProperties listenerProperties,
+      PolicyEventHandlers policyEventHandlers) {
+    final Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties();
+    consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+        listenerProperties.getMaxPollRecords());
+    consumerProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    final TypeHeaderFilteringDeserializer valueDeserializer =
+        new TypeHeaderFilteringDeserializer(policyEventHandlers);
+    valueDeserializer.configure(consumerProperties, false);
+
+    final ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+        new ConcurrentKafkaListenerContainerFactory<>();
+    factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(
+        consumerProperties, new StringDeserializer(), valueDeserializer));
+    factory.setBatchListener(true);
+    factory.setConcurrency(listenerProperties.getConcurrency());
+    factory.setRecordFilterStrategy(record -> record.value() == PolicyEventHandlers.UNHANDLED);
+    // the records are never acknowledged, so the container commits nothing either
+    factory.getContainerProperties().setAckMode(AckMode.MANUAL);
+    return factory;
+  }
+}
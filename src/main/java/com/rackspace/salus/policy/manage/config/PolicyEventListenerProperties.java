@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import javax.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("salus.policy.event-listener")
+@Component
+@Data
+@Validated
+public class PolicyEventListenerProperties {
+
+  /**
+   * Number of consumers of the policies topic run by each replica.
+   * Each partition is consumed by a single consumer of the group, so consumers beyond the
+   * topic's partition count, across all replicas, sit idle.
+   */
+  @Min(1)
+  int concurrency = 1;
+
+  /**
+   * Maximum number of policy events handled as one batch.
+   */
+  @Min(1)
+  int maxPollRecords = 500;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("salus.policy.resolution")
+@Component
+@Data
+@Validated
+public class PolicyResolutionProperties {
+
+  /**
+   * How often to check whether a policy event has been seen and recompile the policies.
+   * Events seen within this period are coalesced into a single recompile.
+   */
+  Duration reloadDelay = Duration.ofSeconds(1);
+
+  /**
+   * How often to fully recompile the policies, regardless of any policy events.
+   */
+  Duration refreshInterval = Duration.ofMinutes(5);
+}
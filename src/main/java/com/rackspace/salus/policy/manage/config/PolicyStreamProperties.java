@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import java.time.Duration;
+import javax.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("salus.policy.stream")
+@Component
+@Data
+@Validated
+public class PolicyStreamProperties {
+
+  /**
+   * How long a policy change stream is held open before the client must reconnect.
+   */
+  Duration timeout = Duration.ofMinutes(30);
+
+  /**
+   * How often a comment is written to idle streams to keep intermediaries from closing them
+   * and to detect clients that have gone away.
+   */
+  Duration heartbeatInterval = Duration.ofSeconds(30);
+
+  /**
+   * Maximum number of tenants a single stream can subscribe to.
+   */
+  @Min(1)
+  int maxTenants = 1_000;
+
+  /**
+   * Maximum number of events waiting to be written to a single stream. A client that falls
+   * this far behind has its stream closed and must reconnect.
+   */
+  @Min(1)
+  int maxPendingEvents = 100;
+
+  /**
+   * Number of threads writing events to the open streams.
+   */
+  @Min(1)
+  int senderThreads = 4;
+}
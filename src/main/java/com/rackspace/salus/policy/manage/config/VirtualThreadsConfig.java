@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs the embedded Tomcat request handling on virtual threads when
+ * <code>salus.policy.virtual-threads.enabled</code> is set.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "salus.policy.virtual-threads", name = "enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadsConfig {
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer() {
+    return protocolHandler -> {
+      if (VirtualThreads.isSupported()) {
+        log.info("Handling web requests on virtual threads");
+        protocolHandler.setExecutor(VirtualThreads.newVirtualThreadPerTaskExecutor());
+      } else {
+        log.warn("Virtual threads were enabled, but are not supported by this JVM. "
+            + "Web requests will be handled on the default thread pool");
+      }
+    };
+  }
+}
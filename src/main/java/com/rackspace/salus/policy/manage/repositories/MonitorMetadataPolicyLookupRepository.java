@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.repositories;
+
+import static com.rackspace.salus.policy.manage.config.HibernateCacheConfig.REGION_POLICY_QUERIES;
+import static org.hibernate.annotations.QueryHints.CACHEABLE;
+import static org.hibernate.annotations.QueryHints.CACHE_REGION;
+
+import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
+import com.rackspace.salus.telemetry.model.MonitorType;
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import com.rackspace.salus.telemetry.model.TargetClassName;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import javax.persistence.QueryHint;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Read-only queries over monitor metadata policies that are specific to policy management.
+ * Each query is expected to be backed by the (scope, subscope) index of the policies table.
+ * The results are held in the query cache until the policies table is next written to.
+ */
+public interface MonitorMetadataPolicyLookupRepository extends Repository<MonitorMetadataPolicy, UUID> {
+
+  @QueryHints({
+      @QueryHint(name = CACHEABLE, value = "true"),
+      @QueryHint(name = CACHE_REGION, value = REGION_POLICY_QUERIES)
+  })
+  Optional<MonitorMetadataPolicy> findByScopeAndTargetClassNameAndKey(
+      PolicyScope scope, TargetClassName targetClassName, String key);
+
+  @QueryHints({
+      @QueryHint(name = CACHEABLE, value = "true"),
+      @QueryHint(name = CACHE_REGION, value = REGION_POLICY_QUERIES)
+  })
+  boolean existsByScopeAndSubscopeAndTargetClassNameAndMonitorTypeAndKey(
+      PolicyScope scope, String subscope, TargetClassName targetClassName, MonitorType monitorType,
+      String key);
+
+  @QueryHints({
+      @QueryHint(name = CACHEABLE, value = "true"),
+      @QueryHint(name = CACHE_REGION, value = REGION_POLICY_QUERIES)
+  })
+  List<MonitorMetadataPolicy> findAllByMonitorTypeAndKey(MonitorType monitorType, String key);
+
+  List<MonitorMetadataPolicy> findAllByScopeAndTargetClassNameAndKeyStartingWith(
+      PolicyScope scope, TargetClassName targetClassName, String keyPrefix);
+}
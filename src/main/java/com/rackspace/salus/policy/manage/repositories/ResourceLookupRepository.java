@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.repositories;
+
+import com.rackspace.salus.telemetry.entities.Resource;
+import java.util.List;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Read-only queries over resources that are specific to policy management.
+ */
+public interface ResourceLookupRepository extends Repository<Resource, Long> {
+
+  /**
+   * Finds the tenants owning at least one resource with the given metadata value.
+   *
+   * @param key The metadata key.
+   * @param value The metadata value.
+   * @return The distinct tenant ids.
+   */
+  @Query("select distinct r.tenantId from Resource r join r.metadata m"
+      + " where key(m) = :key and value(m) = :value")
+  List<String> findTenantsWithMetadata(@Param("key") String key, @Param("value") String value);
+}
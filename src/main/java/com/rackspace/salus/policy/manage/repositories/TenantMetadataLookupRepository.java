@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.repositories;
+
+import static com.rackspace.salus.policy.manage.config.HibernateCacheConfig.REGION_TENANT_METADATA_QUERIES;
+import static org.hibernate.annotations.QueryHints.CACHEABLE;
+import static org.hibernate.annotations.QueryHints.CACHE_REGION;
+
+import com.rackspace.salus.telemetry.entities.TenantMetadata;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import javax.persistence.QueryHint;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Read-only queries over tenant metadata that are specific to policy management.
+ * The results are held in the query cache until the tenant metadata table is next written to.
+ */
+public interface TenantMetadataLookupRepository extends Repository<TenantMetadata, UUID> {
+
+  @QueryHints({
+      @QueryHint(name = CACHEABLE, value = "true"),
+      @QueryHint(name = CACHE_REGION, value = REGION_TENANT_METADATA_QUERIES)
+  })
+  Optional<TenantMetadata> findByTenantId(String tenantId);
+
+  /**
+   * Finds the account type of each of the given tenants that has one.
+   *
+   * @param tenantIds The tenants to look up.
+   * @return The tenant and account type pairs.
+   */
+  @Query("select t.tenantId as tenantId, t.accountType as accountType from TenantMetadata t"
+      + " where t.tenantId in :tenantIds and t.accountType is not null")
+  List<TenantAccountType> findAccountTypesByTenantIdIn(
+      @Param("tenantIds") Collection<String> tenantIds);
+
+  interface TenantAccountType {
+    String getTenantId();
+
+    String getAccountType();
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.telemetry.entities.Policy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * An immutable decision structure holding the winning policy of each name (or key) per scope.
+ *
+ * <p>
+ *   The global policies form the base bucket, with the policies of each account type and of
+ *   each tenant held as overlay buckets. Since a tenant's policy takes priority over an account
+ *   type policy which takes priority over a global one, resolving a tenant walks its bucket,
+ *   then its account type's bucket and then the base bucket, skipping any key already taken.
+ * </p>
+ * <p>
+ *   Each bucket also holds its keys, policies and ids in flat arrays so resolving a tenant
+ *   iterates arrays and only probes the maps of higher priority buckets, allocating nothing
+ *   beyond the result list.
+ * </p>
+ * <p>
+ *   A value can also be derived from each winning policy as it is compiled, such as the typed
+ *   form of a metadata policy's value, so it is computed once per load rather than per request.
+ * </p>
+ *
+ * @param <K> The key that policies compete within.
+ * @param <T> The type of policy.
+ */
+class CompiledPolicies<K, T extends Policy> {
+
+  private final Bucket<K, T> global;
+  private final Map<String, Bucket<K, T>> byAccountType;
+  private final Map<String, Bucket<K, T>> byTenant;
+  // keyed by the compiled policy instances, so a value is only found for the exact policy loaded
+  private final Map<T, Object> values;
+  private final Bucket<K, T> none = Bucket.empty();
+
+  private CompiledPolicies(Bucket<K, T> global, Map<String, Bucket<K, T>> byAccountType,
+      Map<String, Bucket<K, T>> byTenant, Map<T, Object> values) {
+    this.global = global;
+    this.byAccountType = byAccountType;
+    this.byTenant = byTenant;
+    this.values = values;
+  }
+
+  static <K, T extends Policy> CompiledPolicies<K, T> empty() {
+    return new CompiledPolicies<>(Bucket.empty(), Map.of(), Map.of(), Map.of());
+  }
+
+  /**
+   * Compiles the given policies into their scope buckets.
+   *
+   * @param policies All the stored policies.
+   * @param keyGetter Gets the key a policy competes within.
+   * @param monitorIdGetter Gets the monitor a policy applies, or null if it does not apply one.
+   * @return The compiled policies.
+   */
+  static <K, T extends Policy> CompiledPolicies<K, T> compile(Iterable<? extends T> policies,
+      Function<? super T, K> keyGetter, Function<? super T, UUID> monitorIdGetter) {
+    return compile(policies, keyGetter, monitorIdGetter, null);
+  }
+
+  /**
+   * Compiles the given policies into their scope buckets, deriving a value from each winner.
+   *
+   * @param policies All the stored policies.
+   * @param keyGetter Gets the key a policy competes within.
+   * @param monitorIdGetter Gets the monitor a policy applies, or null if it does not apply one.
+   * @param valueGetter Derives the value held with each winning policy, or null to hold none.
+   * @return The compiled policies.
+   */
+  static <K, T extends Policy> CompiledPolicies<K, T> compile(Iterable<? extends T> policies,
+      Function<? super T, K> keyGetter, Function<? super T, UUID> monitorIdGetter,
+      Function<? super T, Object> valueGetter) {
+    final Map<K, T> global = new LinkedHashMap<>();
+    final Map<String, Map<K, T>> byAccountType = new HashMap<>();
+    final Map<String, Map<K, T>> byTenant = new HashMap<>();
+
+    for (T policy : policies) {
+      final K key = keyGetter.apply(policy);
+      switch (policy.getScope()) {
+        case GLOBAL:
+          global.put(key, policy);
+          break;
+        case ACCOUNT_TYPE:
+          byAccountType.computeIfAbsent(policy.getSubscope(), s -> new LinkedHashMap<>())
+              .put(key, policy);
+          break;
+        case TENANT:
+          byTenant.computeIfAbsent(policy.getSubscope(), s -> new LinkedHashMap<>())
+              .put(key, policy);
+          break;
+        default:
+          throw new IllegalStateException("Unsupported scope " + policy.getScope());
+      }
+    }
+
+    final Map<T, Object> values = new IdentityHashMap<>();
+    if (valueGetter != null) {
+      addValues(values, global, valueGetter);
+      byAccountType.values().forEach(bucket -> addValues(values, bucket, valueGetter));
+      byTenant.values().forEach(bucket -> addValues(values, bucket, valueGetter));
+    }
+
+    return new CompiledPolicies<>(Bucket.of(global, monitorIdGetter),
+        toBuckets(byAccountType, monitorIdGetter), toBuckets(byTenant, monitorIdGetter),
+        Collections.unmodifiableMap(values));
+  }
+
+  private static <K, T extends Policy> void addValues(Map<T, Object> values, Map<K, T> winners,
+      Function<? super T, Object> valueGetter) {
+    for (T policy : winners.values()) {
+      values.put(policy, valueGetter.apply(policy));
+    }
+  }
+
+  private static <K, T extends Policy> Map<String, Bucket<K, T>> toBuckets(
+      Map<String, Map<K, T>> winners, Function<? super T, UUID> monitorIdGetter) {
+    final Map<String, Bucket<K, T>> buckets = new HashMap<>(winners.size() * 4 / 3 + 1);
+    winners.forEach((subscope, bucket) -> buckets.put(subscope, Bucket.of(bucket, monitorIdGetter)));
+    return Collections.unmodifiableMap(buckets);
+  }
+
+  /**
+   * Resolves the effective policies of a tenant.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return The winning policy of each key and the number of candidates they were chosen from.
+   */
+  Resolution<T> resolve(String tenantId, String accountType) {
+    final Bucket<K, T> tenant = tenantBucket(tenantId);
+    final Bucket<K, T> account = accountTypeBucket(accountType);
+
+    final int candidates = global.size() + account.size() + tenant.size();
+    final List<T> resolved = new ArrayList<>(candidates);
+    tenant.addPolicies(resolved, none, none);
+    account.addPolicies(resolved, tenant, none);
+    global.addPolicies(resolved, tenant, account);
+    return new Resolution<>(resolved, candidates);
+  }
+
+  /**
+   * Resolves the ids of the effective policies of a tenant without materializing the policies.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @param includeNullMonitors Whether to include the policies that do not apply a monitor.
+   * @return A new list holding the id of the winning policy of each key.
+   */
+  List<UUID> resolvePolicyIds(String tenantId, String accountType, boolean includeNullMonitors) {
+    return resolveIds(tenantId, accountType, false, !includeNullMonitors);
+  }
+
+  /**
+   * Resolves the monitors applied by the effective policies of a tenant.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return A new list holding the monitor id of each winning policy that applies one.
+   */
+  List<UUID> resolveMonitorIds(String tenantId, String accountType) {
+    return resolveIds(tenantId, accountType, true, true);
+  }
+
+  private List<UUID> resolveIds(String tenantId, String accountType, boolean monitorIds,
+      boolean skipNullMonitors) {
+    final Bucket<K, T> tenant = tenantBucket(tenantId);
+    final Bucket<K, T> account = accountTypeBucket(accountType);
+
+    final List<UUID> resolved = new ArrayList<>(
+        global.size() + account.size() + tenant.size());
+    tenant.addIds(resolved, none, none, monitorIds, skipNullMonitors);
+    account.addIds(resolved, tenant, none, monitorIds, skipNullMonitors);
+    global.addIds(resolved, tenant, account, monitorIds, skipNullMonitors);
+    return resolved;
+  }
+
+  /**
+   * Gets the value derived from a policy when it was compiled.
+   *
+   * @param policy A policy resolved from these compiled policies.
+   * @param fallback Derives the value of a policy that was not compiled here, such as one
+   *                 resolved before the policies were recompiled.
+   * @return The value.
+   */
+  Object valueOf(T policy, Function<? super T, Object> fallback) {
+    if (values.containsKey(policy)) {
+      return values.get(policy);
+    }
+    return fallback.apply(policy);
+  }
+
+  /**
+   * Lists every policy considered when resolving a tenant along with whether it won its key.
+   * This is intended for diagnostics rather than the resolution path.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return The candidates of the tenant's bucket, then its account type's, then the global ones.
+   */
+  List<Candidate<K, T>> explain(String tenantId, String accountType) {
+    final Bucket<K, T> tenant = tenantBucket(tenantId);
+    final Bucket<K, T> account = accountTypeBucket(accountType);
+
+    final List<Candidate<K, T>> candidates = new ArrayList<>(
+        countCandidates(tenantId, accountType));
+    tenant.addCandidates(candidates, none, none);
+    account.addCandidates(candidates, tenant, none);
+    global.addCandidates(candidates, tenant, account);
+    return candidates;
+  }
+
+  /**
+   * Counts the policies considered when resolving a tenant, before the lower priority
+   * policies of each key are discarded.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return The number of candidate policies.
+   */
+  int countCandidates(String tenantId, String accountType) {
+    return global.size() + accountTypeBucket(accountType).size() + tenantBucket(tenantId).size();
+  }
+
+  private Bucket<K, T> tenantBucket(String tenantId) {
+    final Bucket<K, T> bucket = byTenant.get(tenantId);
+    return bucket != null ? bucket : none;
+  }
+
+  private Bucket<K, T> accountTypeBucket(String accountType) {
+    final Bucket<K, T> bucket = accountType != null ? byAccountType.get(accountType) : null;
+    return bucket != null ? bucket : none;
+  }
+
+  int size() {
+    int size = global.size();
+    for (Bucket<K, T> bucket : byAccountType.values()) {
+      size += bucket.size();
+    }
+    for (Bucket<K, T> bucket : byTenant.values()) {
+      size += bucket.size();
+    }
+    return size;
+  }
+
+  /**
+   * The effective policies of a tenant, counted against the policies they were chosen from
+   * as they are resolved.
+   */
+  static class Resolution<T> {
+    private final List<T> policies;
+    private final int candidates;
+
+    Resolution(List<T> policies, int candidates) {
+      this.policies = policies;
+      this.candidates = candidates;
+    }
+
+    /**
+     * @return A new list holding the winning policy of each key.
+     */
+    List<T> getPolicies() {
+      return policies;
+    }
+
+    /**
+     * @return The number of policies considered, before the lower priority policies of each
+     * key were discarded.
+     */
+    int getCandidates() {
+      return candidates;
+    }
+  }
+
+  /**
+   * A policy considered when resolving a tenant.
+   */
+  static class Candidate<K, T> {
+    private final K key;
+    private final T policy;
+    private final boolean effective;
+
+    Candidate(K key, T policy, boolean effective) {
+      this.key = key;
+      this.policy = policy;
+      this.effective = effective;
+    }
+
+    K getKey() {
+      return key;
+    }
+
+    T getPolicy() {
+      return policy;
+    }
+
+    /**
+     * @return true if no higher priority scope holds a policy with the same key.
+     */
+    boolean isEffective() {
+      return effective;
+    }
+  }
+
+  /**
+   * The winning policies of one scope and subscope.
+   * The arrays are index aligned, with a null monitor id for policies that do not apply one.
+   */
+  private static class Bucket<K, T> {
+    final Map<K, T> winners;
+    final Object[] keys;
+    final Object[] policies;
+    final UUID[] policyIds;
+    final UUID[] monitorIds;
+
+    private Bucket(Map<K, T> winners, Object[] keys, Object[] policies, UUID[] policyIds,
+        UUID[] monitorIds) {
+      this.winners = winners;
+      this.keys = keys;
+      this.policies = policies;
+      this.policyIds = policyIds;
+      this.monitorIds = monitorIds;
+    }
+
+    static <K, T> Bucket<K, T> empty() {
+      return new Bucket<>(Map.of(), new Object[0], new Object[0], new UUID[0], new UUID[0]);
+    }
+
+    static <K, T extends Policy> Bucket<K, T> of(Map<K, T> winners,
+        Function<? super T, UUID> monitorIdGetter) {
+      final int size = winners.size();
+      final Object[] keys = new Object[size];
+      final Object[] policies = new Object[size];
+      final UUID[] policyIds = new UUID[size];
+      final UUID[] monitorIds = new UUID[size];
+      int i = 0;
+      for (Map.Entry<K, T> entry : winners.entrySet()) {
+        keys[i] = entry.getKey();
+        policies[i] = entry.getValue();
+        policyIds[i] = entry.getValue().getId();
+        monitorIds[i] = monitorIdGetter.apply(entry.getValue());
+        i++;
+      }
+      return new Bucket<>(Collections.unmodifiableMap(winners), keys, policies, policyIds,
+          monitorIds);
+    }
+
+    int size() {
+      return keys.length;
+    }
+
+    boolean containsKey(Object key) {
+      return !winners.isEmpty() && winners.containsKey(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    void addPolicies(List<T> resolved, Bucket<K, T> first, Bucket<K, T> second) {
+      for (int i = 0; i < keys.length; i++) {
+        if (!first.containsKey(keys[i]) && !second.containsKey(keys[i])) {
+          resolved.add((T) policies[i]);
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    void addCandidates(List<Candidate<K, T>> candidates, Bucket<K, T> first, Bucket<K, T> second) {
+      for (int i = 0; i < keys.length; i++) {
+        candidates.add(new Candidate<>((K) keys[i], (T) policies[i],
+            !first.containsKey(keys[i]) && !second.containsKey(keys[i])));
+      }
+    }
+
+    void addIds(List<UUID> resolved, Bucket<K, T> first, Bucket<K, T> second,
+        boolean useMonitorIds, boolean skipNullMonitors) {
+      final UUID[] ids = useMonitorIds ? monitorIds : policyIds;
+      for (int i = 0; i < keys.length; i++) {
+        if ((skipNullMonitors && monitorIds[i] == null)
+            || first.containsKey(keys[i]) || second.containsKey(keys[i])) {
+          continue;
+        }
+        resolved.add(ids[i]);
+      }
+    }
+  }
+}
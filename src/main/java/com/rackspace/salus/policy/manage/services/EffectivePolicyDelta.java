@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+
+/**
+ * The changes to a tenant's effective policies since a version previously given to the client.
+ *
+ * @param <T> The type of policy.
+ */
+@Getter
+public class EffectivePolicyDelta<T> {
+
+  /**
+   * The version to provide on the next request.
+   */
+  private final String version;
+  /**
+   * True if the policies are the tenant's full set and replace any the client has stored.
+   */
+  private final boolean fullResync;
+  /**
+   * The policies that were added or changed.
+   */
+  private final List<T> policies;
+  /**
+   * The ids of the policies that are no longer effective for the tenant.
+   */
+  private final Set<UUID> removedPolicyIds;
+
+  private EffectivePolicyDelta(String version, boolean fullResync, List<T> policies,
+      Set<UUID> removedPolicyIds) {
+    this.version = version;
+    this.fullResync = fullResync;
+    this.policies = policies;
+    this.removedPolicyIds = removedPolicyIds;
+  }
+
+  static <T> EffectivePolicyDelta<T> unchanged(String version) {
+    return new EffectivePolicyDelta<>(version, false, List.of(), Set.of());
+  }
+
+  static <T> EffectivePolicyDelta<T> resync(String version, List<T> effective) {
+    return new EffectivePolicyDelta<>(version, true, effective, Set.of());
+  }
+
+  /**
+   * Determines the delta from the logged changes and the tenant's current effective policies.
+   *
+   * @param changes The changes logged for the tenant since the client's version.
+   * @param effective The tenant's current effective policies.
+   * @param idGetter Gets the id of a policy.
+   * @param groupGetter Gets the group a policy competes within, as recorded in the change log.
+   */
+  static <T> EffectivePolicyDelta<T> of(PolicyChangeLog.Changes changes, List<T> effective,
+      Function<T, UUID> idGetter, Function<T, String> groupGetter) {
+    final List<T> policies = effective.stream()
+        .filter(policy -> changes.getGroups().contains(groupGetter.apply(policy)))
+        .collect(Collectors.toList());
+
+    final Set<UUID> removed = new HashSet<>(changes.getPolicyIds());
+    effective.forEach(policy -> removed.remove(idGetter.apply(policy)));
+
+    return new EffectivePolicyDelta<>(changes.getVersion(), false, policies,
+        Collections.unmodifiableSet(removed));
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.telemetry.entities.Policy;
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Determines which tenants have a different effective policy after a change to one of the
+ * policies sharing a name (or key).
+ *
+ * <p>
+ *   Of all the policies sharing a name, a tenant's effective policy is the applicable one with
+ *   the highest scope priority, as in
+ *   {@link MonitorPolicyManagement#getEffectiveMonitorPoliciesForTenant(String)}.
+ *   The scope of each policy is copied when a diff is created, so later changes to the
+ *   entities do not alter the "before" state.
+ * </p>
+ */
+class EffectivePolicyDiff {
+
+  private final List<ScopedPolicy> before;
+  private final List<ScopedPolicy> after;
+
+  private EffectivePolicyDiff(List<ScopedPolicy> before, List<ScopedPolicy> after) {
+    this.before = before;
+    this.after = after;
+  }
+
+  /**
+   * Creates a diff for a change to the scope of one policy.
+   *
+   * @param sameNamePolicies All the policies sharing the changed policy's name, in their state
+   *                         before the change.
+   * @param changed The changed policy.
+   * @param newScope The scope of the changed policy after the change.
+   * @param newSubscope The subscope of the changed policy after the change.
+   * @return The diff.
+   */
+  static EffectivePolicyDiff ofScopeChange(Collection<? extends Policy> sameNamePolicies,
+      Policy changed, PolicyScope newScope, String newSubscope) {
+    final List<ScopedPolicy> before = new ArrayList<>(sameNamePolicies.size() + 1);
+    final List<ScopedPolicy> after = new ArrayList<>(sameNamePolicies.size() + 1);
+    for (Policy policy : sameNamePolicies) {
+      if (!policy.getId().equals(changed.getId())) {
+        before.add(new ScopedPolicy(policy.getId(), policy.getScope(), policy.getSubscope()));
+      }
+    }
+    after.addAll(before);
+    before.add(new ScopedPolicy(changed.getId(), changed.getScope(), changed.getSubscope()));
+    after.add(new ScopedPolicy(changed.getId(), newScope, newSubscope));
+    return new EffectivePolicyDiff(before, after);
+  }
+
+  /**
+   * @return True if any of the policies involved are account type scoped, in which case the
+   * account type of each tenant is needed to evaluate the diff.
+   */
+  boolean dependsOnAccountType() {
+    return before.stream().anyMatch(p -> p.scope == PolicyScope.ACCOUNT_TYPE)
+        || after.stream().anyMatch(p -> p.scope == PolicyScope.ACCOUNT_TYPE);
+  }
+
+  /**
+   * Filters the given tenants down to those whose effective policy is changed.
+   *
+   * @param tenantIds The tenants that may be affected.
+   * @param accountTypes The account type of each tenant that has one.
+   * @return The tenants with a changed effective policy.
+   */
+  List<String> changedTenants(Collection<String> tenantIds, Map<String, String> accountTypes) {
+    return tenantIds.stream()
+        .filter(tenantId -> {
+          final String accountType = accountTypes.get(tenantId);
+          return !Objects.equals(
+              findWinner(before, tenantId, accountType), findWinner(after, tenantId, accountType));
+        })
+        .collect(Collectors.toList());
+  }
+
+  private static UUID findWinner(List<ScopedPolicy> policies, String tenantId, String accountType) {
+    ScopedPolicy winner = null;
+    for (ScopedPolicy policy : policies) {
+      if (policy.appliesTo(tenantId, accountType)
+          && (winner == null || policy.scope.getPriority() > winner.scope.getPriority())) {
+        winner = policy;
+      }
+    }
+    return winner == null ? null : winner.id;
+  }
+
+  private static class ScopedPolicy {
+    final UUID id;
+    final PolicyScope scope;
+    final String subscope;
+
+    ScopedPolicy(UUID id, PolicyScope scope, String subscope) {
+      this.id = id;
+      this.scope = scope;
+      this.subscope = subscope;
+    }
+
+    boolean appliesTo(String tenantId, String accountType) {
+      switch (scope) {
+        case GLOBAL:
+          return true;
+        case ACCOUNT_TYPE:
+          return subscope.equals(accountType);
+        case TENANT:
+          return subscope.equals(tenantId);
+        default:
+          return false;
+      }
+    }
+  }
+}
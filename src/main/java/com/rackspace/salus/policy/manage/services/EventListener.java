@@ -16,27 +16,95 @@
 
 package com.rackspace.salus.policy.manage.services;
 
+import static com.rackspace.salus.policy.manage.config.HibernateCacheConfig.REGION_POLICY_QUERIES;
+import static com.rackspace.salus.policy.manage.config.HibernateCacheConfig.REGION_TENANT_METADATA_QUERIES;
+
 import com.rackspace.salus.common.messaging.KafkaTopicProperties;
+import com.rackspace.salus.policy.manage.config.PolicyEventListenerConfig;
+import com.rackspace.salus.telemetry.entities.Policy;
+import com.rackspace.salus.telemetry.entities.TenantMetadata;
+import com.rackspace.salus.telemetry.messaging.MetadataPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.MonitorPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.TenantPolicyChangeEvent;
+import com.rackspace.salus.telemetry.model.TargetClassName;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManagerFactory;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.annotation.KafkaHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.stereotype.Service;
 
+/**
+ * Keeps the state held in memory by this replica consistent with the changes made by any replica.
+ *
+ * <p>
+ *   Each replica consumes the policies topic in its own consumer group, so every replica sees
+ *   every policy and tenant change and invalidates its compiled policies, zone table and
+ *   second-level caches as soon as the change is written. The caches a replica updated itself
+ *   when writing a change are left alone when its own event arrives. The changes are also
+ *   appended to the {@link PolicyChangeLog} used to answer effective policy delta requests and
+ *   passed on to the clients of {@link PolicyChangeStreams}.
+ * </p>
+ * <p>
+ *   The consumers commit no offsets, so a replica's group is discarded by the brokers once the
+ *   replica stops rather than being retained with the offsets of a group never used again.
+ * </p>
+ */
 @Service
 @Slf4j
-@KafkaListener(topics = "#{__listener.topic}")
-public class EventListener {
+public class EventListener implements ConsumerSeekAware {
+
+  // the consumer metric holding the greatest offset lag of the partitions it is assigned
+  static final String METRIC_RECORDS_LAG_MAX = "records-lag-max";
+  static final String METRIC_GROUP_FETCH_MANAGER = "consumer-fetch-manager-metrics";
 
   private final KafkaTopicProperties properties;
   private final MonitorPolicyManagement monitorPolicyManagement;
+  private final ZonePolicyTable zonePolicyTable;
+  private final PolicyResolutionEngine policyResolutionEngine;
+  private final PolicyChangeLog policyChangeLog;
+  private final PolicyChangeStreams policyChangeStreams;
+  private final PolicyEventHandlers policyEventHandlers;
+  private final EntityManagerFactory entityManagerFactory;
+  private final PolicyManagementMetrics.EventBatches batchMetrics;
+  private final String origin;
   private final String topic;
+  private final String groupId;
 
   @Autowired
-  public EventListener(KafkaTopicProperties properties, MonitorPolicyManagement monitorPolicyManagement) {
+  public EventListener(KafkaTopicProperties properties, MonitorPolicyManagement monitorPolicyManagement,
+      ZonePolicyTable zonePolicyTable, PolicyResolutionEngine policyResolutionEngine,
+      PolicyChangeLog policyChangeLog, PolicyChangeStreams policyChangeStreams,
+      PolicyEventHandlers policyEventHandlers, EntityManagerFactory entityManagerFactory,
+      PolicyEventProducer policyEventProducer, PolicyManagementMetrics metrics) {
     this.properties = properties;
     this.monitorPolicyManagement = monitorPolicyManagement;
+    this.zonePolicyTable = zonePolicyTable;
+    this.policyResolutionEngine = policyResolutionEngine;
+    this.policyChangeLog = policyChangeLog;
+    this.policyChangeStreams = policyChangeStreams;
+    this.policyEventHandlers = policyEventHandlers;
+    this.entityManagerFactory = entityManagerFactory;
+    this.batchMetrics = metrics.eventBatches();
+    this.origin = policyEventProducer.getOrigin();
     this.topic = this.properties.getPolicies();
+    this.groupId = "policy-management-cache-" + UUID.randomUUID();
+
+    // policy events are read from their headers, so fan-out bursts are never parsed
+    policyEventHandlers.onType(MonitorPolicyEvent.class, this::consumeMonitorPolicyEvent);
+    policyEventHandlers.onType(MetadataPolicyEvent.class, this::consumeMetadataPolicyEvent);
+    policyEventHandlers.on(TenantPolicyChangeEvent.class, this::consumeTenantPolicyChangeEvent);
   }
 
   /**
@@ -48,12 +116,177 @@ public class EventListener {
   }
 
   /**
-   * The policy topic contains multiple event types.
-   * This service does not have to act on them all, so we just ignore them if seen.
-   * @param event The event we will be ignoring.
+   * This method is used by the __listener.groupId magic in the KafkaListener
+   * @return The consumer group of this replica
+   */
+  public String getGroupId() {
+    return groupId;
+  }
+
+  /**
+   * Passes each policy event of a batch to its handler and then applies the changes they
+   * signalled, so a burst of events results in a single update of each local cache.
+   * The policy topic contains multiple event types, but this service does not have to act on
+   * them all. The records of unhandled types are discarded before being deserialized.
+   * @param records The records holding the deserialized events.
+   * @param consumer The consumer that polled the batch.
+   */
+  @KafkaListener(topics = "#{__listener.topic}", groupId = "#{__listener.groupId}",
+      containerFactory = PolicyEventListenerConfig.CONTAINER_FACTORY)
+  public void consumePolicyEvents(List<ConsumerRecord<String, Object>> records,
+      Consumer<?, ?> consumer) {
+    final long start = System.nanoTime();
+
+    final PolicyEventBatch batch = new PolicyEventBatch(origin);
+    long oldestTimestamp = Long.MAX_VALUE;
+    for (ConsumerRecord<String, Object> record : records) {
+      batch.next(record);
+      policyEventHandlers.dispatch(batch, record.value());
+      oldestTimestamp = Math.min(oldestTimestamp, record.timestamp());
+    }
+    apply(batch);
+    // stream clients re-fetch their policies, so they are told once the batch is compiled
+    policyChangeStreams.publish(
+        records.stream().map(ConsumerRecord::value).collect(Collectors.toList()),
+        batch.getPositions());
+    if (!records.isEmpty()) {
+      // the producer's clock is assumed to be in step with this replica's
+      batchMetrics.invalidated(System.currentTimeMillis() - oldestTimestamp);
+    }
+
+    batchMetrics.processed(records.size(), start);
+    final double lag = maxRecordsLag(consumer.metrics());
+    if (!Double.isNaN(lag)) {
+      batchMetrics.lag(lag);
+    }
+    log.debug("Handled batch of {} policy events", records.size());
+  }
+
+  @Override
+  public void registerSeekCallback(ConsumerSeekCallback callback) {
+  }
+
+  /**
+   * Resumes each partition this replica consumed before a rebalance where it was left off,
+   * since no offsets are committed for the next consumer of the partition to start from.
+   */
+  @Override
+  public void onPartitionsAssigned(Map<TopicPartition, Long> assignments,
+      ConsumerSeekCallback callback) {
+    assignments.forEach((partition, offset) -> {
+      final long resumeAt = policyChangeLog.assigned(partition.partition(), offset);
+      if (resumeAt != offset) {
+        callback.seek(partition.topic(), partition.partition(), resumeAt);
+      }
+    });
+    // recompiled so the change log knows the compiled policies cover the assigned positions
+    policyResolutionEngine.markStale();
+  }
+
+  @Override
+  public void onIdleContainer(Map<TopicPartition, Long> assignments,
+      ConsumerSeekCallback callback) {
+  }
+
+  /**
+   * A monitor policy may have been changed by another replica, so the compiled policies
+   * and cached policies held by this replica are out of date.
+   * The event is only parsed if it was sent without the headers holding its ids.
+   * Every change is also followed by an invalidation record holding no tenant, so this
+   * replica invalidates the policy even if the change affected no tenant.
+   * @param batch The batch the event arrived in.
+   * @param event The unparsed monitor policy event or invalidation record.
+   */
+  void consumeMonitorPolicyEvent(PolicyEventBatch batch, PolicyEventHandlers.Unparsed event) {
+    final String policyId = event.header(PolicyEventProducer.HEADER_POLICY_ID);
+    if (policyId == null) {
+      final MonitorPolicyEvent parsed = (MonitorPolicyEvent) event.parse();
+      batch.policyChanged(PolicyChangeLog.PolicyType.MONITOR, parsed.getPolicyId(),
+          parsed.getTenantId());
+      return;
+    }
+    batch.policyChanged(PolicyChangeLog.PolicyType.MONITOR, UUID.fromString(policyId),
+        event.header(PolicyEventProducer.HEADER_TENANT_ID));
+  }
+
+  /**
+   * Zone policies are stored as RemotePlugin metadata policies, so any change to those may
+   * have altered the default monitoring zones held by this replica.
+   * Any metadata policy change also requires the compiled policies to be recompiled.
+   * @param batch The batch the event arrived in.
+   * @param event The unparsed metadata policy event or invalidation record.
+   */
+  void consumeMetadataPolicyEvent(PolicyEventBatch batch, PolicyEventHandlers.Unparsed event) {
+    final String policyId = event.header(PolicyEventProducer.HEADER_POLICY_ID);
+    if (policyId == null) {
+      final MetadataPolicyEvent parsed = (MetadataPolicyEvent) event.parse();
+      if (parsed.getTargetClassName() == TargetClassName.RemotePlugin) {
+        batch.zonePoliciesChanged();
+      }
+      batch.policyChanged(PolicyChangeLog.PolicyType.METADATA, parsed.getPolicyId(),
+          parsed.getTenantId());
+      return;
+    }
+    if (TargetClassName.RemotePlugin.name().equals(
+        event.header(PolicyEventProducer.HEADER_TARGET_CLASS))) {
+      batch.zonePoliciesChanged();
+    }
+    batch.policyChanged(PolicyChangeLog.PolicyType.METADATA, UUID.fromString(policyId),
+        event.header(PolicyEventProducer.HEADER_TENANT_ID));
+  }
+
+  /**
+   * A tenant's metadata may have been changed by another replica, in which case the copy held
+   * in this replica's second-level cache is out of date.
+   * @param batch The batch the event arrived in.
+   * @param event The tenant change event.
+   */
+  void consumeTenantPolicyChangeEvent(PolicyEventBatch batch, TenantPolicyChangeEvent event) {
+    batch.tenantChanged(event.getTenantId());
+  }
+
+  private void apply(PolicyEventBatch batch) {
+    if (!batch.getRemotePolicyIds().isEmpty()) {
+      policyResolutionEngine.markStale();
+      for (UUID policyId : batch.getRemotePolicyIds()) {
+        entityManagerFactory.getCache().evict(Policy.class, policyId);
+      }
+      entityManagerFactory.unwrap(SessionFactory.class).getCache()
+          .evictQueryRegion(REGION_POLICY_QUERIES);
+    }
+    if (batch.isZonePoliciesChanged()) {
+      zonePolicyTable.markStale();
+    }
+    if (batch.isTenantsChanged()) {
+      // the cached entities are keyed by id rather than tenant, so the regions are cleared
+      entityManagerFactory.getCache().evict(TenantMetadata.class);
+      entityManagerFactory.unwrap(SessionFactory.class).getCache()
+          .evictQueryRegion(REGION_TENANT_METADATA_QUERIES);
+    }
+    // appended after the caches are invalidated, so a delta read next sees the new tenant data
+    policyChangeLog.append(batch.getChanges(), batch.getPositions());
+  }
+
+  /**
+   * Finds the greatest offset lag of the partitions assigned to a consumer.
+   *
+   * @param metrics The metrics of the consumer.
+   * @return The lag in records, or NaN if the consumer has not yet measured it.
    */
-  @KafkaHandler(isDefault = true)
-  public void ignoreUnhandledEvents(Object event) {
-    log.trace("Ignoring event={} with no handler", event);
+  static double maxRecordsLag(Map<MetricName, ? extends Metric> metrics) {
+    for (Entry<MetricName, ? extends Metric> entry : metrics.entrySet()) {
+      final MetricName name = entry.getKey();
+      // the per topic variants of the metric are tagged with the topic
+      if (METRIC_RECORDS_LAG_MAX.equals(name.name())
+          && METRIC_GROUP_FETCH_MANAGER.equals(name.group())
+          && !name.tags().containsKey("topic")) {
+        final Object value = entry.getValue().metricValue();
+        if (value instanceof Number && Double.isFinite(((Number) value).doubleValue())) {
+          return ((Number) value).doubleValue();
+        }
+        return Double.NaN;
+      }
+    }
+    return Double.NaN;
   }
 }
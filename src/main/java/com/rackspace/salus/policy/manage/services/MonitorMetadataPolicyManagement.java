@@ -16,37 +16,39 @@
 
 package com.rackspace.salus.policy.manage.services;
 
-import com.rackspace.salus.common.config.MetricNames;
+import brave.SpanCustomizer;
 import com.rackspace.salus.common.config.MetricTagValues;
-import com.rackspace.salus.common.config.MetricTags;
+import com.rackspace.salus.policy.manage.config.ZonePolicyProperties;
+import com.rackspace.salus.policy.manage.repositories.MonitorMetadataPolicyLookupRepository;
+import com.rackspace.salus.policy.manage.repositories.ResourceLookupRepository;
 import com.rackspace.salus.policy.manage.web.model.MetadataPolicyUpdate;
+import com.rackspace.salus.policy.manage.web.model.MetadataValues;
 import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyCreate;
 import com.rackspace.salus.telemetry.entities.MetadataPolicy;
 import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
 import com.rackspace.salus.telemetry.errors.AlreadyExistsException;
 import com.rackspace.salus.telemetry.messaging.MetadataPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.PolicyEvent;
 import com.rackspace.salus.telemetry.model.MetadataValueType;
 import com.rackspace.salus.telemetry.model.MonitorType;
 import com.rackspace.salus.telemetry.model.NotFoundException;
 import com.rackspace.salus.telemetry.model.PolicyScope;
 import com.rackspace.salus.telemetry.model.TargetClassName;
 import com.rackspace.salus.telemetry.repositories.MonitorMetadataPolicyRepository;
-import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 import javax.persistence.EntityManager;
 import javax.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.boot.context.properties.PropertyMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -58,27 +60,87 @@ public class MonitorMetadataPolicyManagement {
 
   private final EntityManager entityManager;
   private final MonitorMetadataPolicyRepository monitorMetadataPolicyRepository;
-  private final PolicyEventProducer policyEventProducer;
+  private final MonitorMetadataPolicyLookupRepository monitorMetadataPolicyLookupRepository;
+  private final PolicyEventFanout policyEventFanout;
+  private final TenantManagement tenantManagement;
   private final PolicyManagement policyManagement;
+  private final ZonePolicyTable zonePolicyTable;
+  private final ResourceLookupRepository resourceLookupRepository;
+  private final ZonePolicyProperties zonePolicyProperties;
+  private final PolicyChangeLog policyChangeLog;
+  private final PolicyResolutionEngine policyResolutionEngine;
+  private final PolicyTracing policyTracing;
 
   MeterRegistry meterRegistry;
 
-  // metrics counters
-  private final Counter.Builder createMonitorMetadataPolicySuccess;
+  private static final String SERVICE_NAME = "MonitorMetadataPolicyManagement";
+
+  // metrics for each operation
+  private final PolicyManagementMetrics.Operation metadataPolicyCreated;
+  private final PolicyManagementMetrics.Operation metadataPolicyUpdated;
+  private final PolicyManagementMetrics.Operation metadataPolicyRemoved;
+  private final PolicyManagementMetrics.Operation zonePolicyCreated;
+  private final PolicyManagementMetrics.Operation zonePolicyUpdated;
+  private final PolicyManagementMetrics.Operation zonePolicyRemoved;
+  private final PolicyManagementMetrics.PhaseTimers effectivePolicyPhases;
+  private final PolicyManagementMetrics.PhaseTimers policyMapPhases;
+
+  // the number of tenants using any zone policy, and of those notified of a zone policy change
+  static final String METRIC_ZONE_POLICY_FANOUT = "policy_mgmt.zone_policy.fanout.tenants";
+  static final String TAG_TENANTS = "tenants";
+  private final DistributionSummary zonePolicyCandidateTenants;
+  private final DistributionSummary zonePolicyTargetedTenants;
 
   public MonitorMetadataPolicyManagement(
       EntityManager entityManager,
       MonitorMetadataPolicyRepository monitorMetadataPolicyRepository,
-      PolicyEventProducer policyEventProducer,
-      PolicyManagement policyManagement, MeterRegistry meterRegistry) {
+      MonitorMetadataPolicyLookupRepository monitorMetadataPolicyLookupRepository,
+      PolicyEventFanout policyEventFanout,
+      TenantManagement tenantManagement,
+      PolicyManagement policyManagement,
+      ZonePolicyTable zonePolicyTable,
+      ResourceLookupRepository resourceLookupRepository,
+      ZonePolicyProperties zonePolicyProperties,
+      PolicyChangeLog policyChangeLog,
+      PolicyResolutionEngine policyResolutionEngine,
+      PolicyManagementMetrics policyManagementMetrics,
+      PolicyTracing policyTracing,
+      MeterRegistry meterRegistry) {
     this.entityManager = entityManager;
     this.monitorMetadataPolicyRepository = monitorMetadataPolicyRepository;
-    this.policyEventProducer = policyEventProducer;
+    this.monitorMetadataPolicyLookupRepository = monitorMetadataPolicyLookupRepository;
+    this.policyEventFanout = policyEventFanout;
+    this.tenantManagement = tenantManagement;
     this.policyManagement = policyManagement;
+    this.zonePolicyTable = zonePolicyTable;
+    this.resourceLookupRepository = resourceLookupRepository;
+    this.zonePolicyProperties = zonePolicyProperties;
+    this.policyChangeLog = policyChangeLog;
+    this.policyResolutionEngine = policyResolutionEngine;
+    this.policyTracing = policyTracing;
 
     this.meterRegistry = meterRegistry;
-    createMonitorMetadataPolicySuccess = Counter.builder(MetricNames.SERVICE_OPERATION_SUCCEEDED)
-        .tag(MetricTags.SERVICE_METRIC_TAG,"MonitorMetadataPolicyManagement");
+    metadataPolicyCreated = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.CREATE_OPERATION, "metadataPolicy");
+    metadataPolicyUpdated = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.UPDATE_OPERATION, "metadataPolicy");
+    metadataPolicyRemoved = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.REMOVE_OPERATION, "metadataPolicy");
+    zonePolicyCreated = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.CREATE_OPERATION, "zonePolicy");
+    zonePolicyUpdated = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.UPDATE_OPERATION, "zonePolicy");
+    zonePolicyRemoved = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.REMOVE_OPERATION, "zonePolicy");
+    effectivePolicyPhases = policyManagementMetrics.phaseTimers(
+        "getEffectiveMetadataPoliciesForTenant");
+    policyMapPhases = policyManagementMetrics.phaseTimers("getMetadataPoliciesForTenantAndType");
+    zonePolicyCandidateTenants = DistributionSummary.builder(METRIC_ZONE_POLICY_FANOUT)
+        .tag(TAG_TENANTS, "candidate")
+        .register(meterRegistry);
+    zonePolicyTargetedTenants = DistributionSummary.builder(METRIC_ZONE_POLICY_FANOUT)
+        .tag(TAG_TENANTS, "targeted")
+        .register(meterRegistry);
   }
 
   /**
@@ -101,8 +163,19 @@ public class MonitorMetadataPolicyManagement {
     return monitorMetadataPolicyRepository.findAll(page);
   }
 
+  /**
+   * Gets the typed form of a policy's value as described by {@link MetadataValues}.
+   * The values of effective policies are parsed once, when the policies are compiled.
+   *
+   * @param policy An effective policy to get the value of.
+   * @return The typed value, or null if the stored value cannot be parsed as its type.
+   */
+  public Object getTypedValue(MonitorMetadataPolicy policy) {
+    return policyResolutionEngine.getTypedValue(policy);
+  }
+
   public Optional<MonitorMetadataPolicy> getZonePolicy(String region) {
-    return monitorMetadataPolicyRepository
+    return monitorMetadataPolicyLookupRepository
         .findByScopeAndTargetClassNameAndKey(
             PolicyScope.GLOBAL, TargetClassName.RemotePlugin, MetadataPolicy.ZONE_METADATA_PREFIX + region);
   }
@@ -117,6 +190,7 @@ public class MonitorMetadataPolicyManagement {
    */
   public MonitorMetadataPolicy createMetadataPolicy(@Valid MonitorMetadataPolicyCreate create)
       throws AlreadyExistsException, IllegalArgumentException {
+    long start = System.nanoTime();
     if (exists(create)) {
       throw new AlreadyExistsException(String.format("Policy already exists with "
               + "scope:subscope:class:type:key of %s:%s:%s:%s:%s",
@@ -145,11 +219,12 @@ public class MonitorMetadataPolicyManagement {
 
     monitorMetadataPolicyRepository.save(policy);
     log.info("Stored new policy {}", policy);
+    if (ZonePolicyTable.isZonePolicy(policy)) {
+      zonePolicyTable.put(policy);
+    }
     sendMetadataPolicyEvents(policy);
 
-    createMonitorMetadataPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG, MetricTagValues.CREATE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"metadataPolicy")
-        .register(meterRegistry).increment();
+    metadataPolicyCreated.succeeded(start);
     return policy;
   }
 
@@ -165,6 +240,7 @@ public class MonitorMetadataPolicyManagement {
    */
   public MonitorMetadataPolicy createZonePolicy(String region, List<String> zones)
       throws AlreadyExistsException, IllegalArgumentException {
+    long start = System.nanoTime();
 
     MonitorMetadataPolicyCreate convertedCreate = (MonitorMetadataPolicyCreate) new MonitorMetadataPolicyCreate()
         .setScope(PolicyScope.GLOBAL)
@@ -175,27 +251,26 @@ public class MonitorMetadataPolicyManagement {
         .setValueType(MetadataValueType.STRING_LIST);
 
     MonitorMetadataPolicy monitorMetadataPolicy = createMetadataPolicy(convertedCreate);
-    createMonitorMetadataPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG,MetricTagValues.CREATE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"zonePolicy")
-        .register(meterRegistry).increment();
+    zonePolicyCreated.succeeded(start);
     return monitorMetadataPolicy;
   }
 
   public MonitorMetadataPolicy updateZonePolicy(String region, List<String> zones)
       throws AlreadyExistsException, IllegalArgumentException {
+    long start = System.nanoTime();
     MonitorMetadataPolicy policy = getZonePolicy(region).orElseThrow(() ->
         new NotFoundException(String.format("No zone policy found for region %s", region)));
 
     policy.setValue(String.join(",", zones));
     monitorMetadataPolicyRepository.save(policy);
+    zonePolicyTable.put(policy);
     sendMetadataPolicyEvents(policy);
-    createMonitorMetadataPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG,MetricTagValues.UPDATE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"zonePolicy")
-        .register(meterRegistry).increment();
+    zonePolicyUpdated.succeeded(start);
     return policy;
   }
 
   public MonitorMetadataPolicy updateMetadataPolicy(UUID id, @Valid MetadataPolicyUpdate update) {
+    long start = System.nanoTime();
     MonitorMetadataPolicy policy = getMetadataPolicy(id).orElseThrow(() ->
         new NotFoundException(String.format("No policy metadata found for %s", id)));
 
@@ -211,11 +286,12 @@ public class MonitorMetadataPolicyManagement {
 
     policy = monitorMetadataPolicyRepository.save(policy);
     log.info("Policy metadata={} stored with new values={}", id, policy);
+    if (ZonePolicyTable.isZonePolicy(policy)) {
+      zonePolicyTable.put(policy);
+    }
 
     sendMetadataPolicyEvents(policy);
-    createMonitorMetadataPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG, MetricTagValues.UPDATE_OPERATION, MetricTags.OBJECT_TYPE_METRIC_TAG,"metadataPolicy")
-        .register(meterRegistry).increment();
+    metadataPolicyUpdated.succeeded(start);
     return policy;
   }
 
@@ -225,27 +301,31 @@ public class MonitorMetadataPolicyManagement {
    * @param id The id of the policy to remove.
    */
   public void removeMetadataPolicy(UUID id) {
+    long start = System.nanoTime();
     MonitorMetadataPolicy policy = getMetadataPolicy(id).orElseThrow(() ->
         new NotFoundException(
             String.format("No policy found with id %s", id)));
 
     monitorMetadataPolicyRepository.deleteById(id);
+    if (ZonePolicyTable.isZonePolicy(policy)) {
+      zonePolicyTable.remove(policy);
+    }
     log.info("Removed policy {}", policy);
     sendMetadataPolicyEvents(policy);
-    createMonitorMetadataPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG, MetricTagValues.REMOVE_OPERATION, MetricTags.OBJECT_TYPE_METRIC_TAG,"metadataPolicy")
-        .register(meterRegistry).increment();
+    metadataPolicyRemoved.succeeded(start);
   }
 
   public void removeZonePolicy(String region) {
+    long start = System.nanoTime();
     MonitorMetadataPolicy policy = getZonePolicy(region).orElseThrow(() ->
         new NotFoundException(String.format("No zone policy found for region %s", region)));
 
     log.info("Removed policy {}", policy);
     monitorMetadataPolicyRepository.delete(policy);
-    createMonitorMetadataPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG, MetricTagValues.REMOVE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"zonePolicy")
-        .register(meterRegistry).increment();
+    zonePolicyTable.remove(policy);
+    // monitors using the region's default zones will now be assigned different zones
+    sendMetadataPolicyEvents(policy);
+    zonePolicyRemoved.succeeded(start);
   }
 
   /**
@@ -254,54 +334,138 @@ public class MonitorMetadataPolicyManagement {
    * @param policy The MetadataPolicy to distribute out to all tenants.
    */
   private void sendMetadataPolicyEvents(MonitorMetadataPolicy policy) {
+    policyTracing.runInSpan("send-metadata-policy-events",
+        span -> sendMetadataPolicyEvents(policy, span));
+  }
+
+  private void sendMetadataPolicyEvents(MonitorMetadataPolicy policy, SpanCustomizer span) {
+    span.tag(PolicyTracing.TAG_POLICY_ID, String.valueOf(policy.getId()));
+    span.tag(PolicyTracing.TAG_POLICY_SCOPE, String.valueOf(policy.getScope()));
     log.info("Sending metadata policy events for {}", policy);
+    // effective policy requests to this replica see the change before any event is consumed
+    policyResolutionEngine.reloadMetadataPolicies();
 
     List<String> tenantIds = getTenantsForMetadataPolicy(policy);
 
-    tenantIds.stream()
+    // tenants with a higher priority policy of the same monitor type and key are unaffected
+    ShadowIndex shadows = ShadowIndex.of(policy,
+        monitorMetadataPolicyLookupRepository.findAllByMonitorTypeAndKey(policy.getMonitorType(), policy.getKey()));
+    if (!shadows.isEmpty()) {
+      tenantIds = shadows.removeShadowed(tenantIds,
+          shadows.dependsOnAccountType() ? tenantManagement.getAccountTypes(tenantIds) : Collections.emptyMap());
+    }
+    span.tag(PolicyTracing.TAG_TENANT_COUNT, String.valueOf(tenantIds.size()));
+
+    List<PolicyEvent> events = tenantIds.stream()
         .map(tenantId -> new MetadataPolicyEvent()
             .setMonitorType(policy.getMonitorType())
             .setTargetClassName(policy.getTargetClassName())
             .setTenantId(tenantId)
             .setPolicyId(policy.getId()))
-        .forEach(policyEventProducer::sendPolicyEvent);
+        .collect(Collectors.toList());
+    span.tag(PolicyTracing.TAG_EVENT_COUNT, String.valueOf(events.size()));
+
+    PolicyFanoutEvent event = new PolicyFanoutEvent();
+    event.begin();
+    policyEventFanout.sendPolicyEvents(events, changeGroup(policy));
+    policyEventFanout.sendPolicyInvalidation(new MetadataPolicyEvent()
+        .setMonitorType(policy.getMonitorType())
+        .setTargetClassName(policy.getTargetClassName())
+        .setPolicyId(policy.getId()), changeGroup(policy));
+    event.end();
+    if (event.shouldCommit()) {
+      event.policyId = String.valueOf(policy.getId());
+      event.policyType = "metadata";
+      event.scope = String.valueOf(policy.getScope());
+      event.subscope = policy.getSubscope();
+      event.tenantCount = tenantIds.size();
+      event.commit();
+    }
   }
 
   /**
    * Gets all the metadata policies relevant to a tenant.
    *
-   * Filters the list of all policies down to those that fall into the correct scope/subscope for
-   * the provided tenant.
+   * The policies are resolved from the compiled policies held by the {@link PolicyResolutionEngine},
+   * taking the highest priority policy of each monitor type and key in the tenant's scope.
    *
    * @param tenantId The tenantId to retrieve policies for.
    * @return The list of effective metadata policies that should be applied to the tenant's
    * resources.
    */
   public List<MonitorMetadataPolicy> getEffectiveMetadataPoliciesForTenant(String tenantId) {
-    return
-        // Create a stream from all metadata policies
-        StreamSupport.stream(monitorMetadataPolicyRepository.findAll().spliterator(), false)
-            // Filter the stream for only those policies relevant to this tenant
-            .filter(policy -> policyManagement.isPolicyApplicable(policy, tenantId))
-            // Get one policy for each policy name
-            .collect(
-                // First group the policies by monitor type and key
-                Collectors.groupingBy(policy -> Pair.of(policy.getMonitorType(), policy.getKey()),
-                    // then filter each group by only retrieving the one with the highest priority
-                    Collectors
-                        .maxBy(Comparator.comparingInt(policy -> policy.getScope().getPriority())))
-            )
-            // Now we have a map of policy name -> (optional) metadata policy
-            .values().stream()
-            // Filter out any of the optional objects that do not contain anything
-            .filter(Optional::isPresent).map(Optional::get)
-            // Finally convert to a list of the relevant metadata policies
-            .collect(Collectors.toList());
+    return policyTracing.inSpan("resolve-metadata-policies",
+        span -> resolveEffectiveMetadataPolicies(tenantId, span));
+  }
+
+  private List<MonitorMetadataPolicy> resolveEffectiveMetadataPolicies(String tenantId,
+      SpanCustomizer span) {
+    PolicyResolutionEvent event = new PolicyResolutionEvent();
+    event.begin();
+    long start = System.nanoTime();
+    String accountType = tenantManagement.getAccountTypeByTenant(tenantId);
+    long resolveStart = System.nanoTime();
+    CompiledPolicies.Resolution<MonitorMetadataPolicy> resolution =
+        policyResolutionEngine.resolveMetadataPolicies(tenantId, accountType);
+    long resolveEnd = System.nanoTime();
+
+    List<MonitorMetadataPolicy> policies = resolution.getPolicies();
+    int candidates = resolution.getCandidates();
+    effectivePolicyPhases.record(PolicyManagementMetrics.PHASE_TENANT_LOOKUP,
+        start, resolveStart, candidates, policies.size());
+    effectivePolicyPhases.record(PolicyManagementMetrics.PHASE_RESOLVE,
+        resolveStart, resolveEnd, candidates, policies.size());
+    span.tag(PolicyTracing.TAG_TENANT_ID, tenantId);
+    span.tag(PolicyTracing.TAG_CANDIDATE_COUNT, String.valueOf(candidates));
+    span.tag(PolicyTracing.TAG_RESULT_COUNT, String.valueOf(policies.size()));
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.tenantId = tenantId;
+      event.policyType = "metadata";
+      event.candidates = candidates;
+      event.results = policies.size();
+      event.commit();
+    }
+    return policies;
+  }
+
+  /**
+   * Gets the changes to a tenant's effective metadata policies since a previous request.
+   *
+   * The policies returned include every effective policy sharing a monitor type and key with
+   * a policy that changed, since removing or rescoping one policy can make another effective.
+   *
+   * @param tenantId The tenantId to retrieve the changes for.
+   * @param sinceVersion The version returned by the previous request, or null to get all policies.
+   * @return The added or changed policies and the ids of those no longer effective.
+   */
+  public EffectivePolicyDelta<MonitorMetadataPolicy> getEffectiveMetadataPolicyDelta(
+      String tenantId, String sinceVersion) {
+    // read the log first so any change made while loading the policies is sent again next time
+    PolicyChangeLog.Changes changes = policyChangeLog.getChangesSince(
+        PolicyChangeLog.PolicyType.METADATA, tenantId, sinceVersion);
+    if (changes.isComplete() && changes.getPolicyIds().isEmpty()) {
+      return EffectivePolicyDelta.unchanged(changes.getVersion());
+    }
+
+    List<MonitorMetadataPolicy> effective = getEffectiveMetadataPoliciesForTenant(tenantId);
+    if (!changes.isComplete()) {
+      return EffectivePolicyDelta.resync(changes.getVersion(), effective);
+    }
+    return EffectivePolicyDelta.of(changes, effective,
+        MonitorMetadataPolicy::getId, MonitorMetadataPolicyManagement::changeGroup);
+  }
+
+  private static String changeGroup(MonitorMetadataPolicy policy) {
+    return policy.getMonitorType() + "/" + policy.getKey();
   }
 
   public Map<String, MonitorMetadataPolicy> getMetadataPoliciesForTenantAndType(String tenantId,
       TargetClassName className, MonitorType monitorType) {
+    long start = System.nanoTime();
     List<MonitorMetadataPolicy> listOfPolicies = getEffectiveMetadataPoliciesForTenant(tenantId);
+    long filterStart = System.nanoTime();
 
     Map<String, MonitorMetadataPolicy> policyValuesMap = new HashMap<>();
     for (MonitorMetadataPolicy policy : listOfPolicies) {
@@ -316,6 +480,12 @@ public class MonitorMetadataPolicyManagement {
         }
       }
     }
+    long filterEnd = System.nanoTime();
+
+    policyMapPhases.record(PolicyManagementMetrics.PHASE_RESOLVE,
+        start, filterStart, listOfPolicies.size(), policyValuesMap.size());
+    policyMapPhases.record(PolicyManagementMetrics.PHASE_FILTER,
+        filterStart, filterEnd, listOfPolicies.size(), policyValuesMap.size());
     return policyValuesMap;
   }
 
@@ -325,13 +495,16 @@ public class MonitorMetadataPolicyManagement {
     }
     log.debug("Getting default zones for region={}", region);
 
-    Optional<MonitorMetadataPolicy> policy = monitorMetadataPolicyRepository
-        .findByScopeAndTargetClassNameAndKey(
-            PolicyScope.GLOBAL, TargetClassName.RemotePlugin, MetadataPolicy.ZONE_METADATA_PREFIX + region);
+    return zonePolicyTable.getZones(region);
+  }
 
-    return policy.map(
-        monitorMetadataPolicy -> Arrays.asList(monitorMetadataPolicy.getValue().split("\\s*,\\s*")))
-        .orElse(Collections.emptyList());
+  /**
+   * Gets the default monitoring zones of every region.
+   *
+   * @return The zones of each region along with a version identifying that content.
+   */
+  public ZonePolicyTable.Snapshot getAllDefaultMonitoringZones() {
+    return zonePolicyTable.getSnapshot();
   }
 
   /**
@@ -341,7 +514,7 @@ public class MonitorMetadataPolicyManagement {
    * @return True if a policy already exists for these keys, false otherwise.
    */
   private boolean exists(MonitorMetadataPolicyCreate policy) {
-    return monitorMetadataPolicyRepository.existsByScopeAndSubscopeAndTargetClassNameAndMonitorTypeAndKey(
+    return monitorMetadataPolicyLookupRepository.existsByScopeAndSubscopeAndTargetClassNameAndMonitorTypeAndKey(
         policy.getScope(), policy.getSubscope(), policy.getTargetClassName(), policy.getMonitorType(), policy.getKey());
   }
 
@@ -359,9 +532,7 @@ public class MonitorMetadataPolicyManagement {
   private List<String> getTenantsForMetadataPolicy(MonitorMetadataPolicy policy) {
     List<String> tenantsUsingPolicyKey;
     if (policy.getKey().startsWith(MetadataPolicy.ZONE_METADATA_PREFIX)) {
-      tenantsUsingPolicyKey = entityManager
-          .createNamedQuery("Monitor.getTenantsUsingZoneMetadata", String.class)
-          .getResultList();
+      tenantsUsingPolicyKey = getTenantsForZonePolicy(policy);
     } else if (policy.getTargetClassName().equals(TargetClassName.Monitor)) {
       tenantsUsingPolicyKey = entityManager
           .createNamedQuery("Monitor.getTenantsUsingPolicyMetadataInMonitor", String.class)
@@ -385,4 +556,40 @@ public class MonitorMetadataPolicyManagement {
           .collect(Collectors.toList());
     }
   }
+
+  /**
+   * Get the tenants whose monitors may be using the default zones of the zone policy's region.
+   *
+   * Monitors using default zones are assigned the zones of the region of the resource they are
+   * bound to, so only tenants with resources in that region are affected by its zone policy.
+   * Resources without a region use the default region's zones, so all tenants using zone
+   * metadata are returned for that region.
+   *
+   * @param policy The zone policy to send events for.
+   * @return A list of tenants that may be relevant to the policy.
+   */
+  private List<String> getTenantsForZonePolicy(MonitorMetadataPolicy policy) {
+    final List<String> candidates = entityManager
+        .createNamedQuery("Monitor.getTenantsUsingZoneMetadata", String.class)
+        .getResultList();
+    final String region = policy.getKey().substring(MetadataPolicy.ZONE_METADATA_PREFIX.length());
+
+    final List<String> targeted;
+    if (region.equals(MetadataPolicy.DEFAULT_ZONE)) {
+      targeted = candidates;
+    } else {
+      final Set<String> tenantsInRegion = new HashSet<>(resourceLookupRepository
+          .findTenantsWithMetadata(zonePolicyProperties.getRegionMetadataKey(), region));
+      targeted = candidates.stream()
+          .distinct()
+          .filter(tenantsInRegion::contains)
+          .collect(Collectors.toList());
+    }
+
+    log.debug("Zone policy for region={} targets {} of {} tenants using zone metadata",
+        region, targeted.size(), candidates.size());
+    zonePolicyCandidateTenants.record(candidates.size());
+    zonePolicyTargetedTenants.record(targeted.size());
+    return targeted;
+  }
 }
@@ -16,9 +16,9 @@
 
 package com.rackspace.salus.policy.manage.services;
 
-import com.rackspace.salus.common.config.MetricNames;
+import brave.SpanCustomizer;
 import com.rackspace.salus.common.config.MetricTagValues;
-import com.rackspace.salus.common.config.MetricTags;
+import com.rackspace.salus.policy.manage.repositories.MonitorPolicyLookupRepository;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyCreate;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyUpdate;
 import com.rackspace.salus.policy.manage.web.model.validator.ValidNewPolicy;
@@ -26,22 +26,19 @@ import com.rackspace.salus.telemetry.entities.Monitor;
 import com.rackspace.salus.telemetry.entities.MonitorPolicy;
 import com.rackspace.salus.telemetry.errors.AlreadyExistsException;
 import com.rackspace.salus.telemetry.messaging.MonitorPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.PolicyEvent;
 import com.rackspace.salus.telemetry.model.NotFoundException;
 import com.rackspace.salus.telemetry.model.PolicyScope;
 import com.rackspace.salus.telemetry.repositories.MonitorPolicyRepository;
 import com.rackspace.salus.telemetry.repositories.MonitorRepository;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 import javax.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -55,30 +52,52 @@ public class MonitorPolicyManagement {
 
   private final MonitorRepository monitorRepository;
   private final MonitorPolicyRepository monitorPolicyRepository;
-  private final PolicyEventProducer policyEventProducer;
+  private final MonitorPolicyLookupRepository monitorPolicyLookupRepository;
+  private final PolicyEventFanout policyEventFanout;
+  private final TenantManagement tenantManagement;
   private final PolicyManagement policyManagement;
+  private final PolicyChangeLog policyChangeLog;
+  private final PolicyResolutionEngine policyResolutionEngine;
+  private final PolicyTracing policyTracing;
 
-  MeterRegistry meterRegistry;
+  private static final String SERVICE_NAME = "MonitorPolicyManagement";
 
-  // metrics counters
-  private final Counter.Builder monitorPolicySuccess;
+  // metrics for each operation
+  private final PolicyManagementMetrics.Operation monitorPolicyCreated;
+  private final PolicyManagementMetrics.Operation monitorPolicyUpdated;
+  private final PolicyManagementMetrics.Operation monitorPolicyRemoved;
+  private final PolicyManagementMetrics.PhaseTimers effectivePolicyPhases;
 
   @Autowired
   public MonitorPolicyManagement(
       MonitorRepository monitorRepository,
       MonitorPolicyRepository monitorPolicyRepository,
-      PolicyEventProducer policyEventProducer,
+      MonitorPolicyLookupRepository monitorPolicyLookupRepository,
+      PolicyEventFanout policyEventFanout,
       TenantManagement tenantManagement,
       PolicyManagement policyManagement,
-      MeterRegistry meterRegistry) {
+      PolicyChangeLog policyChangeLog,
+      PolicyResolutionEngine policyResolutionEngine,
+      PolicyManagementMetrics policyManagementMetrics,
+      PolicyTracing policyTracing) {
     this.monitorRepository = monitorRepository;
     this.monitorPolicyRepository = monitorPolicyRepository;
-    this.policyEventProducer = policyEventProducer;
+    this.monitorPolicyLookupRepository = monitorPolicyLookupRepository;
+    this.policyEventFanout = policyEventFanout;
+    this.tenantManagement = tenantManagement;
     this.policyManagement = policyManagement;
+    this.policyChangeLog = policyChangeLog;
+    this.policyResolutionEngine = policyResolutionEngine;
+    this.policyTracing = policyTracing;
 
-    this.meterRegistry = meterRegistry;
-    monitorPolicySuccess = Counter.builder(MetricNames.SERVICE_OPERATION_SUCCEEDED)
-        .tag(MetricTags.SERVICE_METRIC_TAG,"MonitorPolicyManagement");
+    monitorPolicyCreated = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.CREATE_OPERATION, "monitorPolicy");
+    monitorPolicyUpdated = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.UPDATE_OPERATION, "monitorPolicy");
+    monitorPolicyRemoved = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.REMOVE_OPERATION, "monitorPolicy");
+    effectivePolicyPhases = policyManagementMetrics.phaseTimers(
+        "getEffectiveMonitorPoliciesForTenant");
   }
 
   /**
@@ -91,6 +110,7 @@ public class MonitorPolicyManagement {
    */
   public MonitorPolicy createMonitorPolicy(@Valid MonitorPolicyCreate create)
       throws AlreadyExistsException, IllegalArgumentException {
+    long start = System.nanoTime();
     if (exists(create)) {
       throw new AlreadyExistsException(String.format("Policy already exists with scope:subscope:name of %s:%s:%s",
           create.getScope(), create.getSubscope(), create.getName()));
@@ -108,13 +128,12 @@ public class MonitorPolicyManagement {
     monitorPolicyRepository.save(policy);
     log.info("Stored new policy {}", policy);
     sendMonitorPolicyEvents(policy);
-    monitorPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG, MetricTagValues.CREATE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"monitorPolicy")
-        .register(meterRegistry).increment();
+    monitorPolicyCreated.succeeded(start);
     return policy;
   }
 
   public MonitorPolicy updateMonitorPolicy(UUID policyId, MonitorPolicyUpdate update) {
+    long start = System.nanoTime();
     MonitorPolicy policy = getMonitorPolicy(policyId).orElseThrow(() ->
         new NotFoundException(String.format("No policy found for %s", policyId)));
 
@@ -123,6 +142,8 @@ public class MonitorPolicyManagement {
     validateScope(scope, subscope);
 
     Set<String> originalTenants = new HashSet<>(policyManagement.getTenantsForPolicy(policy));
+    EffectivePolicyDiff diff = EffectivePolicyDiff.ofScopeChange(
+        monitorPolicyLookupRepository.findAllByName(policy.getName()), policy, scope, subscope);
 
     policy.setScope(scope);
     policy.setSubscope(subscope);
@@ -131,11 +152,16 @@ public class MonitorPolicyManagement {
     Set<String> allRelevantTenants = new HashSet<>(policyManagement.getTenantsForPolicy(policy));
     allRelevantTenants.addAll(originalTenants);
 
+    // only the tenants whose effective policy for this name has changed need to be notified
+    List<String> changedTenants = diff.changedTenants(allRelevantTenants,
+        diff.dependsOnAccountType()
+            ? tenantManagement.getAccountTypes(allRelevantTenants) : Collections.emptyMap());
+    log.debug("Scope change of policy={} affects {} of {} relevant tenants",
+        policyId, changedTenants.size(), allRelevantTenants.size());
+
     monitorPolicyRepository.save(policy);
-    sendMonitorPolicyEventsForTenants(policy, allRelevantTenants);
-    monitorPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG,MetricTagValues.UPDATE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"monitorPolicy")
-        .register(meterRegistry).increment();
+    sendMonitorPolicyEventsForTenants(policy, changedTenants);
+    monitorPolicyUpdated.succeeded(start);
     return policy;
   }
 
@@ -149,24 +175,13 @@ public class MonitorPolicyManagement {
   }
 
   public List<UUID> getEffectiveMonitorTemplateIdsForTenant(String tenantId) {
-    return getEffectiveMonitorPoliciesForTenant(tenantId)
-        .stream()
-        .map(MonitorPolicy::getMonitorTemplateId)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
+    String accountType = tenantManagement.getAccountTypeByTenant(tenantId);
+    return policyResolutionEngine.resolveMonitorTemplateIds(tenantId, accountType);
   }
 
   public List<UUID> getEffectiveMonitorPolicyIdsForTenant(String tenantId, boolean includeNullMonitors) {
-    return getEffectiveMonitorPoliciesForTenant(tenantId)
-        .stream()
-        .filter(p -> {
-          if (!includeNullMonitors) {
-            return p.getMonitorTemplateId() != null;
-          }
-          return true;
-        })
-        .map(MonitorPolicy::getId)
-        .collect(Collectors.toList());
+    String accountType = tenantManagement.getAccountTypeByTenant(tenantId);
+    return policyResolutionEngine.resolveMonitorPolicyIds(tenantId, accountType, includeNullMonitors);
   }
 
   /**
@@ -181,31 +196,74 @@ public class MonitorPolicyManagement {
   /**
    * Gets all the monitor policies relevant to a tenant.
    *
-   * Filters the list of all policies down to those that fall into the correct scope/subscope for
-   * the provided tenant.
+   * The policies are resolved from the compiled policies held by the {@link PolicyResolutionEngine},
+   * taking the highest priority policy of each name that falls into the tenant's scope.
    *
    * @param tenantId The tenantId to retrieve policies for.
    * @return The list of effective monitor policies that should be applied to the tenant's resources.
    */
   public List<MonitorPolicy> getEffectiveMonitorPoliciesForTenant(String tenantId) {
-    return
-        // Create a stream from all monitor policies
-        StreamSupport.stream(monitorPolicyRepository.findAll().spliterator(), false)
-            // Filter the stream for only those policies relevant to this tenant
-            .filter(policy -> policyManagement.isPolicyApplicable(policy, tenantId))
-            // Get one policy for each policy name
-            .collect(
-                // First group the policies by name
-                Collectors.groupingBy(MonitorPolicy::getName,
-                    // then filter each group by only retrieving the one with the highest priority
-                    Collectors.maxBy(Comparator.comparingInt(policy -> policy.getScope().getPriority())))
-            )
-            // Now we have a map of policy name -> (optional) monitor policy
-            .values().stream()
-            // Filter out any of the optional objects that do not contain anything
-            .filter(Optional::isPresent).map(Optional::get)
-            // Finally convert to a list of the relevant monitor policies
-            .collect(Collectors.toList());
+    return policyTracing.inSpan("resolve-monitor-policies",
+        span -> resolveEffectiveMonitorPolicies(tenantId, span));
+  }
+
+  private List<MonitorPolicy> resolveEffectiveMonitorPolicies(String tenantId,
+      SpanCustomizer span) {
+    PolicyResolutionEvent event = new PolicyResolutionEvent();
+    event.begin();
+    long start = System.nanoTime();
+    String accountType = tenantManagement.getAccountTypeByTenant(tenantId);
+    long resolveStart = System.nanoTime();
+    CompiledPolicies.Resolution<MonitorPolicy> resolution =
+        policyResolutionEngine.resolveMonitorPolicies(tenantId, accountType);
+    long resolveEnd = System.nanoTime();
+
+    List<MonitorPolicy> policies = resolution.getPolicies();
+    int candidates = resolution.getCandidates();
+    effectivePolicyPhases.record(PolicyManagementMetrics.PHASE_TENANT_LOOKUP,
+        start, resolveStart, candidates, policies.size());
+    effectivePolicyPhases.record(PolicyManagementMetrics.PHASE_RESOLVE,
+        resolveStart, resolveEnd, candidates, policies.size());
+    span.tag(PolicyTracing.TAG_TENANT_ID, tenantId);
+    span.tag(PolicyTracing.TAG_CANDIDATE_COUNT, String.valueOf(candidates));
+    span.tag(PolicyTracing.TAG_RESULT_COUNT, String.valueOf(policies.size()));
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.tenantId = tenantId;
+      event.policyType = "monitor";
+      event.candidates = candidates;
+      event.results = policies.size();
+      event.commit();
+    }
+    return policies;
+  }
+
+  /**
+   * Gets the changes to a tenant's effective monitor policies since a previous request.
+   *
+   * The policies returned include every effective policy sharing a name with a policy that
+   * changed, since removing or rescoping one policy can make another of the same name effective.
+   *
+   * @param tenantId The tenantId to retrieve the changes for.
+   * @param sinceVersion The version returned by the previous request, or null to get all policies.
+   * @return The added or changed policies and the ids of those no longer effective.
+   */
+  public EffectivePolicyDelta<MonitorPolicy> getEffectiveMonitorPolicyDelta(
+      String tenantId, String sinceVersion) {
+    // read the log first so any change made while loading the policies is sent again next time
+    PolicyChangeLog.Changes changes = policyChangeLog.getChangesSince(
+        PolicyChangeLog.PolicyType.MONITOR, tenantId, sinceVersion);
+    if (changes.isComplete() && changes.getPolicyIds().isEmpty()) {
+      return EffectivePolicyDelta.unchanged(changes.getVersion());
+    }
+
+    List<MonitorPolicy> effective = getEffectiveMonitorPoliciesForTenant(tenantId);
+    if (!changes.isComplete()) {
+      return EffectivePolicyDelta.resync(changes.getVersion(), effective);
+    }
+    return EffectivePolicyDelta.of(changes, effective,
+        MonitorPolicy::getId, MonitorPolicy::getName);
   }
 
   /**
@@ -213,6 +271,7 @@ public class MonitorPolicyManagement {
    * @param id The id of the policy to remove.
    */
   public void removeMonitorPolicy(UUID id) {
+    long start = System.nanoTime();
     MonitorPolicy policy = getMonitorPolicy(id).orElseThrow(() ->
         new NotFoundException(
             String.format("No policy found with id %s", id)));
@@ -220,9 +279,7 @@ public class MonitorPolicyManagement {
     monitorPolicyRepository.deleteById(id);
     log.info("Removed policy {}", policy);
     sendMonitorPolicyEvents(policy);
-    monitorPolicySuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG,MetricTagValues.REMOVE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"monitorPolicy")
-        .register(meterRegistry).increment();
+    monitorPolicyRemoved.succeeded(start);
   }
 
   /**
@@ -241,7 +298,7 @@ public class MonitorPolicyManagement {
    * @return True if a policy already exists for these keys, false otherwise.
    */
   private boolean exists(MonitorPolicyCreate policy) {
-    return monitorPolicyRepository.existsByScopeAndSubscopeAndName(
+    return monitorPolicyLookupRepository.existsByScopeAndSubscopeAndName(
         policy.getScope(), policy.getSubscope(), policy.getName());
   }
 
@@ -251,22 +308,58 @@ public class MonitorPolicyManagement {
    */
   private void sendMonitorPolicyEvents(MonitorPolicy policy) {
     List<String> tenantIds = policyManagement.getTenantsForPolicy(policy);
+
+    // tenants with a higher priority policy of the same name are unaffected by this one
+    ShadowIndex shadows = ShadowIndex.of(policy,
+        monitorPolicyLookupRepository.findAllByName(policy.getName()));
+    if (!shadows.isEmpty()) {
+      tenantIds = shadows.removeShadowed(tenantIds,
+          shadows.dependsOnAccountType() ? tenantManagement.getAccountTypes(tenantIds) : Collections.emptyMap());
+    }
     sendMonitorPolicyEventsForTenants(policy, tenantIds);
   }
 
   private void sendMonitorPolicyEventsForTenants(MonitorPolicy policy, Collection<String> tenantIds) {
+    policyTracing.runInSpan("send-monitor-policy-events",
+        span -> sendMonitorPolicyEventsForTenants(policy, tenantIds, span));
+  }
+
+  private void sendMonitorPolicyEventsForTenants(MonitorPolicy policy, Collection<String> tenantIds,
+      SpanCustomizer span) {
+    span.tag(PolicyTracing.TAG_POLICY_ID, String.valueOf(policy.getId()));
+    span.tag(PolicyTracing.TAG_POLICY_SCOPE, String.valueOf(policy.getScope()));
+    span.tag(PolicyTracing.TAG_TENANT_COUNT, String.valueOf(tenantIds.size()));
     log.info("Sending {} monitor policy events for {}", tenantIds.size(), policy);
+    // effective policy requests to this replica see the change before any event is consumed
+    policyResolutionEngine.reloadMonitorPolicies();
 
     if (policy.getMonitorTemplateId() == null) {
       log.debug("Sending opt-out event for policy={}", policy);
     }
 
-    tenantIds.stream()
+    List<PolicyEvent> events = tenantIds.stream()
         .map(tenantId -> new MonitorPolicyEvent()
             .setMonitorId(policy.getMonitorTemplateId())
             .setPolicyId(policy.getId())
             .setTenantId(tenantId))
-        .forEach(policyEventProducer::sendPolicyEvent);
+        .collect(Collectors.toList());
+    span.tag(PolicyTracing.TAG_EVENT_COUNT, String.valueOf(events.size()));
+
+    PolicyFanoutEvent event = new PolicyFanoutEvent();
+    event.begin();
+    policyEventFanout.sendPolicyEvents(events, policy.getName());
+    policyEventFanout.sendPolicyInvalidation(new MonitorPolicyEvent()
+        .setMonitorId(policy.getMonitorTemplateId())
+        .setPolicyId(policy.getId()), policy.getName());
+    event.end();
+    if (event.shouldCommit()) {
+      event.policyId = String.valueOf(policy.getId());
+      event.policyType = "monitor";
+      event.scope = String.valueOf(policy.getScope());
+      event.subscope = policy.getSubscope();
+      event.tenantCount = tenantIds.size();
+      event.commit();
+    }
   }
 
   /**
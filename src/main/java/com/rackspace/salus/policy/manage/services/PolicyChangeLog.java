@@ -0,0 +1,392 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.policy.manage.config.PolicyChangeLogProperties;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Retains the most recent policy changes consumed from the policies topic so clients can
+ * request the changes to a tenant's effective policies since a previous request.
+ *
+ * <p>
+ *   The log is fed by {@link EventListener}, so it holds the changes made through every replica
+ *   along with the tenant changes that may alter which policies apply. Each change is located by
+ *   the partition and offset of its event and the log's version is the position consumed in each
+ *   partition, written as <code>partition:offset</code> pairs. Offsets are the same for every
+ *   consumer of the topic, so a version issued by one replica can be used with any other.
+ * </p>
+ * <p>
+ *   A version never covers a policy change that the compiled policies do not yet reflect, so a
+ *   client is never told it is up to date while this replica still resolves the old policies.
+ *   The client is told to resync if its version is ahead of this replica, the changes since its
+ *   version are no longer retained, or one of the tenant's changes cannot be described as a set
+ *   of changed policies.
+ * </p>
+ */
+@Service
+@Slf4j
+public class PolicyChangeLog {
+
+  public enum PolicyType {
+    MONITOR,
+    METADATA
+  }
+
+  private final PolicyChangeLogProperties properties;
+  private final Map<Integer, PartitionLog> partitions = new TreeMap<>();
+  private final Map<PolicyType, Map<Integer, Long>> compiled = new EnumMap<>(PolicyType.class);
+  private final List<Runnable> compiledListeners = new CopyOnWriteArrayList<>();
+
+  @Autowired
+  public PolicyChangeLog(PolicyChangeLogProperties properties) {
+    this.properties = properties;
+  }
+
+  /**
+   * Starts tracking a partition assigned to one of this replica's consumers.
+   * The consumers commit no offsets, so a partition already consumed by this replica is resumed
+   * where it was left off and its retained changes are kept.
+   *
+   * @param partition The partition assigned.
+   * @param offset The offset of the next record the consumer would otherwise read.
+   * @return The offset the consumer is to resume reading the partition from.
+   */
+  synchronized long assigned(int partition, long offset) {
+    final PartitionLog log = partitions.get(partition);
+    if (log != null) {
+      return log.position;
+    }
+    partitions.put(partition, new PartitionLog(offset));
+    return offset;
+  }
+
+  /**
+   * Appends the changes of a batch of consumed policy events.
+   * The changes made by this replica were compiled before their events were sent, so where
+   * everything consumed before the batch is already compiled the compiled positions advance
+   * past them up to the first change of another replica.
+   *
+   * @param changes The changes in the order they were consumed.
+   * @param positions The offset following the last record consumed from each partition.
+   */
+  synchronized void append(List<Change> changes, Map<Integer, Long> positions) {
+    final Map<PolicyType, Map<Integer, Long>> compiledTo = new EnumMap<>(PolicyType.class);
+    for (PolicyType type : PolicyType.values()) {
+      final Map<Integer, Long> compiledPositions = compiled.getOrDefault(type, Map.of());
+      final Map<Integer, Long> caughtUp = new HashMap<>();
+      positions.forEach((partition, position) -> {
+        final PartitionLog log = partitions.get(partition);
+        if (log != null && compiledPositions.getOrDefault(partition, -1L) >= log.position) {
+          caughtUp.put(partition, position);
+        }
+      });
+      compiledTo.put(type, caughtUp);
+    }
+
+    for (Change change : changes) {
+      partitions.computeIfAbsent(change.partition, p -> new PartitionLog(change.offset))
+          .add(change, properties.getMaxEntries());
+      if (change.type != null && !change.local) {
+        compiledTo.get(change.type).computeIfPresent(change.partition,
+            (partition, position) -> Math.min(position, change.offset));
+      }
+    }
+    for (Entry<Integer, Long> entry : positions.entrySet()) {
+      final PartitionLog log =
+          partitions.computeIfAbsent(entry.getKey(), p -> new PartitionLog(entry.getValue()));
+      log.position = Math.max(log.position, entry.getValue());
+    }
+    compiledTo.forEach((type, caughtUp) -> {
+      if (!caughtUp.isEmpty()) {
+        advanceCompiled(type, caughtUp);
+      }
+    });
+  }
+
+  /**
+   * Gets the position consumed in each partition, to be passed to {@link #compiled} once the
+   * policies read after this call have been compiled.
+   *
+   * @return A copy of the offset following the last record consumed from each partition.
+   */
+  synchronized Map<Integer, Long> positions() {
+    final Map<Integer, Long> positions = new HashMap<>();
+    partitions.forEach((partition, log) -> positions.put(partition, log.position));
+    return positions;
+  }
+
+  /**
+   * Indicates the compiled policies of a type reflect every change consumed before the given
+   * positions.
+   *
+   * @param type The type of policies compiled.
+   * @param positions The positions read by {@link #positions()} before the policies were read.
+   */
+  void compiled(PolicyType type, Map<Integer, Long> positions) {
+    synchronized (this) {
+      advanceCompiled(type, positions);
+    }
+    // run without holding the log, since listeners read it from other threads too
+    compiledListeners.forEach(Runnable::run);
+  }
+
+  /**
+   * Registers a listener run each time the compiled policies of a type are swapped in.
+   *
+   * @param listener The listener, which is run on the thread that compiled the policies.
+   */
+  void onCompiled(Runnable listener) {
+    compiledListeners.add(listener);
+  }
+
+  /**
+   * Determines whether the compiled policies of every type reflect all changes consumed before
+   * the given positions.
+   *
+   * @param positions The offset following the last record of interest in each partition.
+   * @return True if the changes are compiled.
+   */
+  synchronized boolean isCompiled(Map<Integer, Long> positions) {
+    for (PolicyType type : PolicyType.values()) {
+      final Map<Integer, Long> compiledPositions = compiled.getOrDefault(type, Map.of());
+      for (Entry<Integer, Long> entry : positions.entrySet()) {
+        if (compiledPositions.getOrDefault(entry.getKey(), -1L) < entry.getValue()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void advanceCompiled(PolicyType type, Map<Integer, Long> positions) {
+    final Map<Integer, Long> compiledPositions = compiled.computeIfAbsent(type, t -> new HashMap<>());
+    positions.forEach((partition, position) -> compiledPositions.merge(partition, position, Math::max));
+  }
+
+  /**
+   * Gets the changes made to a tenant's policies since the given version.
+   *
+   * @param type The type of policies to consider.
+   * @param tenantId The tenant to get the changes for.
+   * @param sinceVersion The version returned to the client by its previous request, if any.
+   * @return The changes, which are incomplete if the client needs to resync its full policy set.
+   */
+  synchronized Changes getChangesSince(PolicyType type, String tenantId, String sinceVersion) {
+    final Map<Integer, Long> version = versionOf(type);
+    final String encodedVersion = encode(version);
+    final Map<Integer, Long> since = decode(sinceVersion);
+    if (since == null || !since.keySet().equals(version.keySet())) {
+      return new Changes(encodedVersion, false, Set.of(), Set.of());
+    }
+
+    final Set<UUID> policyIds = new HashSet<>();
+    final Set<String> groups = new HashSet<>();
+    for (Entry<Integer, Long> entry : version.entrySet()) {
+      final PartitionLog log = partitions.get(entry.getKey());
+      final long from = since.get(entry.getKey());
+      final long to = entry.getValue();
+      if (from > to || from < log.retainedFrom) {
+        return new Changes(encodedVersion, false, Set.of(), Set.of());
+      }
+
+      final Iterator<Change> it = log.changes.descendingIterator();
+      while (it.hasNext()) {
+        final Change change = it.next();
+        if (change.offset < from) {
+          break;
+        }
+        if (change.offset >= to || !tenantId.equals(change.tenantId)) {
+          continue;
+        }
+        if (change.type == null || (change.type == type && change.group == null)) {
+          // the tenant's account type changed, or the change was sent without its group
+          return new Changes(encodedVersion, false, Set.of(), Set.of());
+        }
+        if (change.type == type) {
+          policyIds.add(change.policyId);
+          groups.add(change.group);
+        }
+      }
+    }
+    return new Changes(encodedVersion, true, policyIds, groups);
+  }
+
+  /**
+   * Determines the position in each partition up to which every change of a type is compiled.
+   */
+  private Map<Integer, Long> versionOf(PolicyType type) {
+    final Map<Integer, Long> compiledPositions = compiled.getOrDefault(type, Map.of());
+    final Map<Integer, Long> version = new TreeMap<>();
+    partitions.forEach((partition, log) -> {
+      final long compiledTo = compiledPositions.getOrDefault(partition, -1L);
+      long position = log.position;
+      final Iterator<Change> it = log.changes.descendingIterator();
+      while (it.hasNext()) {
+        final Change change = it.next();
+        if (change.offset < compiledTo) {
+          break;
+        }
+        if (change.type == type) {
+          position = change.offset;
+        }
+      }
+      version.put(partition, position);
+    });
+    return version;
+  }
+
+  private static String encode(Map<Integer, Long> version) {
+    final StringJoiner joiner = new StringJoiner(",");
+    version.forEach((partition, offset) -> joiner.add(partition + ":" + offset));
+    return joiner.toString();
+  }
+
+  private static Map<Integer, Long> decode(String version) {
+    if (version == null) {
+      return null;
+    }
+    final Map<Integer, Long> positions = new HashMap<>();
+    if (version.isEmpty()) {
+      return positions;
+    }
+    for (String pair : version.split(",")) {
+      final int separator = pair.indexOf(':');
+      if (separator < 0) {
+        return null;
+      }
+      try {
+        positions.put(Integer.parseInt(pair.substring(0, separator)),
+            Long.parseLong(pair.substring(separator + 1)));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return positions;
+  }
+
+  private static class PartitionLog {
+    final Deque<Change> changes = new ArrayDeque<>();
+    /**
+     * The offset from which every change of the partition is retained.
+     */
+    long retainedFrom;
+    long position;
+
+    PartitionLog(long offset) {
+      this.retainedFrom = offset;
+      this.position = offset;
+    }
+
+    void add(Change change, int maxEntries) {
+      changes.addLast(change);
+      position = Math.max(position, change.offset + 1);
+      while (changes.size() > maxEntries) {
+        retainedFrom = changes.removeFirst().offset + 1;
+      }
+    }
+  }
+
+  /**
+   * A change consumed from the policies topic that may alter one tenant's effective policies.
+   */
+  static class Change {
+    final int partition;
+    final long offset;
+    /**
+     * The type of policy changed, or null if the tenant itself changed.
+     */
+    final PolicyType type;
+    final UUID policyId;
+    final String group;
+    final String tenantId;
+    /**
+     * True if the change was made through this replica.
+     */
+    final boolean local;
+
+    private Change(int partition, long offset, PolicyType type, UUID policyId, String group,
+        String tenantId, boolean local) {
+      this.partition = partition;
+      this.offset = offset;
+      this.type = type;
+      this.policyId = policyId;
+      this.group = group;
+      this.tenantId = tenantId;
+      this.local = local;
+    }
+
+    /**
+     * @param group The name, or monitor type and key, shared by the policies competing with the
+     *              changed policy, or null if it was not sent with the event.
+     */
+    static Change policy(int partition, long offset, PolicyType type, UUID policyId,
+        String group, String tenantId) {
+      return policy(partition, offset, type, policyId, group, tenantId, false);
+    }
+
+    /**
+     * @param local True if the change was made, and so already compiled, by this replica.
+     */
+    static Change policy(int partition, long offset, PolicyType type, UUID policyId,
+        String group, String tenantId, boolean local) {
+      return new Change(partition, offset, type, policyId, group, tenantId, local);
+    }
+
+    static Change tenant(int partition, long offset, String tenantId) {
+      return new Change(partition, offset, null, null, null, tenantId, false);
+    }
+  }
+
+  @Getter
+  static class Changes {
+    /**
+     * The version of the log these changes were read at.
+     */
+    private final String version;
+    /**
+     * False if the changes could not be determined and the client must resync.
+     */
+    private final boolean complete;
+    private final Set<UUID> policyIds;
+    private final Set<String> groups;
+
+    Changes(String version, boolean complete, Set<UUID> policyIds, Set<String> groups) {
+      this.version = version;
+      this.complete = complete;
+      this.policyIds = policyIds;
+      this.groups = groups;
+    }
+  }
+}
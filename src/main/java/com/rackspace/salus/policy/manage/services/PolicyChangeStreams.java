@@ -0,0 +1,313 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.policy.manage.config.PolicyStreamProperties;
+import com.rackspace.salus.telemetry.messaging.PolicyEvent;
+import com.rackspace.salus.telemetry.messaging.TenantPolicyChangeEvent;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the policy events of a set of tenants to clients holding a server-sent events stream.
+ *
+ * <p>
+ *   Events are passed on by {@link EventListener}, which sees the events of every tenant
+ *   regardless of which replica made the change. Each event is written to the streams
+ *   subscribed to its tenant with the event's type as the event name, letting clients re-fetch
+ *   only the affected effective policies.
+ * </p>
+ * <p>
+ *   The events of a batch are held back until the compiled policies of this replica include the
+ *   batch, as reported to the {@link PolicyChangeLog}, so a client re-fetching its effective
+ *   policies on receiving an event sees the change.
+ * </p>
+ * <p>
+ *   Events are queued per stream and written by a small pool of threads, so a slow client never
+ *   holds up the consumer or other clients. A stream whose queue fills is closed.
+ * </p>
+ */
+@Service
+@Slf4j
+public class PolicyChangeStreams {
+
+  private final PolicyStreamProperties properties;
+  private final PolicyChangeLog policyChangeLog;
+  private final ExecutorService executor;
+  private final Queue<PendingBatch> pendingBatches = new ArrayDeque<>();
+  private final ConcurrentMap<String, Set<Subscription>> subscriptionsByTenant =
+      new ConcurrentHashMap<>();
+  private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+  @Autowired
+  public PolicyChangeStreams(PolicyStreamProperties properties, PolicyChangeLog policyChangeLog) {
+    this.properties = properties;
+    this.policyChangeLog = policyChangeLog;
+    this.executor = Executors.newFixedThreadPool(properties.getSenderThreads(),
+        new CustomizableThreadFactory("policy-stream-"));
+    policyChangeLog.onCompiled(this::releaseCompiled);
+  }
+
+  /**
+   * Opens a stream of the policy events of the given tenants.
+   *
+   * @param tenantIds The tenants to send events for.
+   * @return The emitter to return from the request handler.
+   * @throws IllegalArgumentException if no tenants or too many tenants are given.
+   */
+  public SseEmitter subscribe(Collection<String> tenantIds) throws IllegalArgumentException {
+    if (tenantIds.isEmpty()) {
+      throw new IllegalArgumentException("At least one tenant must be provided");
+    }
+    if (tenantIds.size() > properties.getMaxTenants()) {
+      throw new IllegalArgumentException(
+          String.format("At most %d tenants can be streamed at once", properties.getMaxTenants()));
+    }
+
+    return subscribe(tenantIds, new SseEmitter(properties.getTimeout().toMillis()));
+  }
+
+  /**
+   * Writes the policy events of the given tenants to an emitter.
+   *
+   * @param tenantIds The tenants to send events for.
+   * @param emitter The emitter to write to.
+   * @return The given emitter.
+   */
+  SseEmitter subscribe(Collection<String> tenantIds, SseEmitter emitter) {
+    final Subscription subscription = new Subscription(emitter, Set.copyOf(tenantIds),
+        properties.getMaxPendingEvents());
+    emitter.onCompletion(() -> unsubscribe(subscription));
+    emitter.onTimeout(() -> unsubscribe(subscription));
+    emitter.onError(e -> unsubscribe(subscription));
+
+    subscriptions.add(subscription);
+    for (String tenantId : subscription.tenantIds) {
+      subscriptionsByTenant.compute(tenantId, (key, tenantSubscriptions) -> {
+        if (tenantSubscriptions == null) {
+          tenantSubscriptions = new CopyOnWriteArraySet<>();
+        }
+        tenantSubscriptions.add(subscription);
+        return tenantSubscriptions;
+      });
+    }
+    log.debug("Opened policy stream for tenants={}", subscription.tenantIds);
+    return emitter;
+  }
+
+  /**
+   * Queues the events of a consumed batch for each stream subscribed to their tenants, once
+   * the compiled policies include the batch.
+   * Tenant change events are also sent, since any of the tenant's effective policies may have
+   * changed with its account type.
+   *
+   * @param events The consumed policy and tenant change events.
+   * @param positions The offset following the last record of the batch in each partition.
+   */
+  public void publish(List<?> events, Map<Integer, Long> positions) {
+    if (subscriptions.isEmpty()) {
+      return;
+    }
+    synchronized (pendingBatches) {
+      pendingBatches.add(new PendingBatch(events, Map.copyOf(positions)));
+    }
+    releaseCompiled();
+  }
+
+  /**
+   * Sends the batches held back, in the order they were consumed, up to the first that the
+   * compiled policies do not yet include.
+   */
+  private void releaseCompiled() {
+    synchronized (pendingBatches) {
+      PendingBatch batch;
+      while ((batch = pendingBatches.peek()) != null
+          && policyChangeLog.isCompiled(batch.positions)) {
+        pendingBatches.remove();
+        batch.events.forEach(this::publish);
+      }
+    }
+  }
+
+  private void publish(Object event) {
+    if (event instanceof PolicyEventHandlers.Unparsed) {
+      final PolicyEventHandlers.Unparsed unparsed = (PolicyEventHandlers.Unparsed) event;
+      final String tenantId = unparsed.header(PolicyEventProducer.HEADER_TENANT_ID);
+      if (tenantId != null && !subscriptionsByTenant.containsKey(tenantId)) {
+        return;
+      }
+      // only the events written to a stream are parsed
+      event = unparsed.parse();
+    }
+    if (event instanceof PolicyEvent) {
+      publish(((PolicyEvent) event).getTenantId(), event);
+    } else if (event instanceof TenantPolicyChangeEvent) {
+      publish(((TenantPolicyChangeEvent) event).getTenantId(), event);
+    }
+  }
+
+  private void publish(String tenantId, Object event) {
+    final Set<Subscription> tenantSubscriptions = subscriptionsByTenant.get(tenantId);
+    if (tenantSubscriptions == null) {
+      return;
+    }
+    for (Subscription subscription : tenantSubscriptions) {
+      subscription.send(SseEmitter.event()
+          .name(event.getClass().getSimpleName())
+          .data(event, MediaType.APPLICATION_JSON));
+    }
+  }
+
+  @Scheduled(fixedDelayString = "#{@policyStreamProperties.heartbeatInterval.toMillis()}",
+      initialDelayString = "#{@policyStreamProperties.heartbeatInterval.toMillis()}")
+  public void sendHeartbeats() {
+    for (Subscription subscription : subscriptions) {
+      subscription.send(SseEmitter.event().comment("heartbeat"));
+    }
+  }
+
+  int getSubscriptionCount() {
+    return subscriptions.size();
+  }
+
+  /**
+   * Writes the events already queued and then closes every stream.
+   */
+  @PreDestroy
+  public void stop() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+        log.warn("Timed out writing queued events to policy streams");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    subscriptions.forEach(subscription -> subscription.emitter.complete());
+  }
+
+  private void unsubscribe(Subscription subscription) {
+    if (!subscriptions.remove(subscription)) {
+      return;
+    }
+    for (String tenantId : subscription.tenantIds) {
+      subscriptionsByTenant.computeIfPresent(tenantId, (key, tenantSubscriptions) -> {
+        tenantSubscriptions.remove(subscription);
+        return tenantSubscriptions.isEmpty() ? null : tenantSubscriptions;
+      });
+    }
+    log.debug("Closed policy stream for tenants={}", subscription.tenantIds);
+  }
+
+  private static class PendingBatch {
+    final List<?> events;
+    final Map<Integer, Long> positions;
+
+    PendingBatch(List<?> events, Map<Integer, Long> positions) {
+      this.events = events;
+      this.positions = positions;
+    }
+  }
+
+  private class Subscription {
+    final SseEmitter emitter;
+    final Set<String> tenantIds;
+    final Queue<SseEmitter.SseEventBuilder> pending;
+    /**
+     * Set while a writer is scheduled, so the stream is only ever written by one thread.
+     */
+    final AtomicBoolean writing = new AtomicBoolean();
+
+    Subscription(SseEmitter emitter, Set<String> tenantIds, int maxPendingEvents) {
+      this.emitter = emitter;
+      this.tenantIds = tenantIds;
+      this.pending = new ArrayBlockingQueue<>(maxPendingEvents);
+    }
+
+    /**
+     * Queues an event to be written by the executor, closing the stream if the client has
+     * not kept up with the events already queued.
+     */
+    void send(SseEmitter.SseEventBuilder event) {
+      if (!pending.offer(event)) {
+        log.warn("Closing policy stream for tenants={} that fell {} events behind",
+            tenantIds, pending.size());
+        unsubscribe(this);
+        emitter.complete();
+        return;
+      }
+      scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+      if (writing.compareAndSet(false, true)) {
+        try {
+          executor.execute(this::write);
+        } catch (RejectedExecutionException e) {
+          // the service is stopping and the stream is about to be closed
+          writing.set(false);
+        }
+      }
+    }
+
+    /**
+     * Writes the queued events. A failed write means the client has gone away.
+     */
+    private void write() {
+      try {
+        SseEmitter.SseEventBuilder event;
+        while ((event = pending.poll()) != null) {
+          emitter.send(event);
+        }
+      } catch (IOException | IllegalStateException e) {
+        log.debug("Failed to write to policy stream for tenants={}", tenantIds, e);
+        unsubscribe(this);
+        pending.clear();
+        emitter.completeWithError(e);
+        return;
+      } finally {
+        writing.set(false);
+      }
+      // an event queued after the last poll but before the flag was cleared
+      if (!pending.isEmpty()) {
+        scheduleWrite();
+      }
+    }
+  }
+}
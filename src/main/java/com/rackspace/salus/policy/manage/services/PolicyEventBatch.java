@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.policy.manage.services.PolicyChangeLog.Change;
+import com.rackspace.salus.policy.manage.services.PolicyChangeLog.PolicyType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * Accumulates the changes signalled by one batch of policy events, so each local cache and
+ * index is updated once per batch rather than once per event.
+ * The caches this replica already updated when writing a change are only invalidated for the
+ * changes made by other replicas.
+ */
+class PolicyEventBatch {
+
+  private final String origin;
+  private final Set<UUID> remotePolicyIds = new HashSet<>();
+  private boolean zonePoliciesChanged;
+  private boolean tenantsChanged;
+  private final List<Change> changes = new ArrayList<>();
+  private final Map<Integer, Long> positions = new HashMap<>();
+  private ConsumerRecord<?, ?> record;
+  private boolean remote;
+
+  /**
+   * @param origin The origin header value of the events sent by this replica.
+   */
+  PolicyEventBatch(String origin) {
+    this.origin = origin;
+  }
+
+  /**
+   * Sets the record whose event is about to be handled.
+   *
+   * @param record The consumed record.
+   */
+  void next(ConsumerRecord<?, ?> record) {
+    this.record = record;
+    positions.merge(record.partition(), record.offset() + 1, Math::max);
+    final String recordOrigin = header(PolicyEventProducer.HEADER_ORIGIN);
+    remote = recordOrigin == null || !recordOrigin.equals(origin);
+  }
+
+  /**
+   * Indicates the current event changed a policy that may apply to the given tenant.
+   *
+   * @param type The type of policy changed.
+   * @param policyId The id of the changed policy.
+   * @param tenantId The tenant whose effective policies may have changed, or null for the
+   *                 invalidation record sent once per change.
+   */
+  void policyChanged(PolicyType type, UUID policyId, String tenantId) {
+    if (remote) {
+      remotePolicyIds.add(policyId);
+    }
+    changes.add(Change.policy(record.partition(), record.offset(), type, policyId,
+        header(PolicyEventProducer.HEADER_POLICY_GROUP), tenantId, !remote));
+  }
+
+  void zonePoliciesChanged() {
+    zonePoliciesChanged |= remote;
+  }
+
+  /**
+   * Indicates the current event changed a tenant in a way that may alter its effective policies.
+   *
+   * @param tenantId The tenant changed.
+   */
+  void tenantChanged(String tenantId) {
+    tenantsChanged |= remote;
+    changes.add(Change.tenant(record.partition(), record.offset(), tenantId));
+  }
+
+  /**
+   * Gets the distinct ids of the policies changed by other replicas.
+   */
+  Set<UUID> getRemotePolicyIds() {
+    return remotePolicyIds;
+  }
+
+  boolean isZonePoliciesChanged() {
+    return zonePoliciesChanged;
+  }
+
+  boolean isTenantsChanged() {
+    return tenantsChanged;
+  }
+
+  List<Change> getChanges() {
+    return changes;
+  }
+
+  Map<Integer, Long> getPositions() {
+    return positions;
+  }
+
+  /**
+   * Gets the headers of the record whose event is being handled.
+   *
+   * @return The headers, or null if no record has been set.
+   */
+  Headers headers() {
+    return record != null ? record.headers() : null;
+  }
+
+  private String header(String key) {
+    final Header header = record.headers().lastHeader(key);
+    return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+  }
+}
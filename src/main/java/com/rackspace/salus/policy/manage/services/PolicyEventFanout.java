@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.policy.manage.config.FanoutProperties;
+import com.rackspace.salus.policy.manage.config.VirtualThreads;
+import com.rackspace.salus.policy.manage.config.VirtualThreadsProperties;
+import com.rackspace.salus.telemetry.messaging.PolicyEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Sends the policy events generated by a single policy change.
+ *
+ * <p>
+ *   Large sets of events are split into shards that match the partitions of the policies topic
+ *   and each shard is sent on a bounded pool of worker threads. Since all events for a tenant
+ *   share a message key they always land in the same shard, and each shard is sent in order,
+ *   so the ordering of events per tenant is the same as when sending on a single thread.
+ * </p>
+ */
+@Service
+@Slf4j
+public class PolicyEventFanout {
+
+  private final PolicyEventProducer policyEventProducer;
+  private final FanoutProperties properties;
+  private final ExecutorService executor;
+
+  @Autowired
+  public PolicyEventFanout(PolicyEventProducer policyEventProducer, FanoutProperties properties,
+      VirtualThreadsProperties virtualThreadsProperties, PolicyTracing policyTracing) {
+    this.policyEventProducer = policyEventProducer;
+    this.properties = properties;
+    final ExecutorService executor;
+    if (virtualThreadsProperties.isEnabled() && VirtualThreads.isSupported()) {
+      // the number of shards still bounds the concurrency of each fan-out
+      executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+    } else {
+      executor = Executors.newFixedThreadPool(properties.getMaxThreads(),
+          new CustomizableThreadFactory("policy-fanout-"));
+    }
+    // the trace context is carried to the worker threads so it is written to each record sent
+    this.executor = policyTracing.wrap(executor);
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdown();
+  }
+
+  /**
+   * Sends all the given events and waits for each of them to be handed to the producer.
+   *
+   * @param events The events to send.
+   * @param group The name, or monitor type and key, shared by the policies competing with the
+   *              changed policy.
+   */
+  void sendPolicyEvents(List<? extends PolicyEvent> events, String group) {
+    if (events.size() < properties.getParallelThreshold()) {
+      events.forEach(event -> policyEventProducer.sendPolicyEvent(event, group));
+      return;
+    }
+
+    final List<List<PolicyEvent>> shards = shard(events);
+    log.debug("Sending {} policy events across {} shards", events.size(), shards.size());
+
+    final List<CompletableFuture<Void>> sends = new ArrayList<>(shards.size());
+    for (List<PolicyEvent> shard : shards) {
+      if (!shard.isEmpty()) {
+        sends.add(CompletableFuture.runAsync(
+            () -> shard.forEach(event -> policyEventProducer.sendPolicyEvent(event, group)),
+            executor));
+      }
+    }
+
+    try {
+      CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Sends the record the other replicas of this service invalidate the changed policy on.
+   * It is sent for every change, after the events of the tenants affected by it, since a
+   * change may affect no tenant at all.
+   *
+   * @param change An event holding the id of the changed policy and no tenant.
+   * @param group The name, or monitor type and key, shared by the policies competing with the
+   *              changed policy.
+   */
+  void sendPolicyInvalidation(PolicyEvent change, String group) {
+    policyEventProducer.sendPolicyInvalidation(change, group);
+  }
+
+  /**
+   * Groups the events by the partition they will be written to.
+   * If the partition count cannot be determined the events are spread across one shard
+   * per worker thread using the same hashing.
+   */
+  private List<List<PolicyEvent>> shard(List<? extends PolicyEvent> events) {
+    int shardCount = policyEventProducer.getPartitionCount();
+    if (shardCount <= 0) {
+      shardCount = properties.getMaxThreads();
+    }
+
+    final List<List<PolicyEvent>> shards = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new ArrayList<>());
+    }
+    for (PolicyEvent event : events) {
+      shards.get(PolicyEventProducer.partitionFor(event, shardCount)).add(event);
+    }
+    return shards;
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the handlers of each policy event type consumed by {@link EventListener}.
+ *
+ * <p>
+ *   The handlers are keyed by the class name written to the type header of each record, so
+ *   {@link TypeHeaderFilteringDeserializer} can decide whether a record is wanted before
+ *   parsing it. Handlers that read what they need from the record headers are registered with
+ *   {@link #onType(Class, BiConsumer)} and are given an {@link Unparsed} event, whose payload
+ *   is only parsed if it is asked for.
+ * </p>
+ */
+@Component
+@Slf4j
+public class PolicyEventHandlers {
+
+  /**
+   * The value given to records that no handler is registered for.
+   */
+  public static final Object UNHANDLED = new Object();
+
+  private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+
+  /**
+   * Registers a handler that receives the deserialized events of the given type.
+   *
+   * @param type The type of event.
+   * @param handler The handler of each event, given the batch the event arrived in.
+   */
+  <T> void on(Class<T> type, BiConsumer<PolicyEventBatch, ? super T> handler) {
+    handlers.put(type.getName(),
+        new Handler(type, true, (batch, event) -> handler.accept(batch, type.cast(event))));
+  }
+
+  /**
+   * Registers a handler that receives the events of the given type without their payload
+   * being deserialized.
+   *
+   * @param type The type of event.
+   * @param handler The handler of each event, given the batch the event arrived in.
+   */
+  void onType(Class<?> type, BiConsumer<PolicyEventBatch, Unparsed> handler) {
+    handlers.put(type.getName(),
+        new Handler(type, false, (batch, event) -> handler.accept(batch, (Unparsed) event)));
+  }
+
+  /**
+   * Gets the handler of an event type.
+   *
+   * @param typeId The class name of the event type.
+   * @return The handler, or null if the type is not handled.
+   */
+  Handler get(String typeId) {
+    return handlers.get(typeId);
+  }
+
+  /**
+   * Passes an event to its handler.
+   *
+   * @param batch The batch the event arrived in.
+   * @param event The value produced by {@link TypeHeaderFilteringDeserializer}.
+   */
+  void dispatch(PolicyEventBatch batch, Object event) {
+    if (event instanceof Unparsed) {
+      ((Unparsed) event).handler.handler.accept(batch, event);
+      return;
+    }
+    final Handler handler = event != null ? handlers.get(event.getClass().getName()) : null;
+    if (handler == null) {
+      log.trace("Ignoring event={} with no handler", event);
+      return;
+    }
+    // a record without a type header can only have been identified by parsing it
+    handler.handler.accept(batch,
+        handler.payloadRequired ? event : new Unparsed(handler, batch.headers(), () -> event));
+  }
+
+  static class Handler {
+    private final Class<?> type;
+    private final boolean payloadRequired;
+    private final BiConsumer<PolicyEventBatch, Object> handler;
+
+    private Handler(Class<?> type, boolean payloadRequired,
+        BiConsumer<PolicyEventBatch, Object> handler) {
+      this.type = type;
+      this.payloadRequired = payloadRequired;
+      this.handler = handler;
+    }
+
+    boolean isPayloadRequired() {
+      return payloadRequired;
+    }
+
+    @Override
+    public String toString() {
+      return "Handler of " + type.getSimpleName();
+    }
+  }
+
+  /**
+   * An event of a type whose handler reads the record headers rather than the payload.
+   */
+  static class Unparsed {
+    private final Handler handler;
+    private final Headers headers;
+    private final Supplier<Object> parser;
+    private Object parsed;
+
+    Unparsed(Handler handler, Headers headers, Supplier<Object> parser) {
+      this.handler = handler;
+      this.headers = headers;
+      this.parser = parser;
+    }
+
+    /**
+     * Gets the value of a header of the record.
+     *
+     * @param key The header to read.
+     * @return The value of the last header with the key, or null if there is none.
+     */
+    String header(String key) {
+      final Header header = headers != null ? headers.lastHeader(key) : null;
+      return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Parses the payload of the record, for the events that are needed in full.
+     *
+     * @return The deserialized event, or null if the record has no payload.
+     */
+    synchronized Object parse() {
+      if (parsed == null) {
+        parsed = parser.get();
+      }
+      return parsed;
+    }
+
+    @Override
+    public String toString() {
+      return "Unparsed " + handler.type.getSimpleName();
+    }
+  }
+}
@@ -19,37 +19,163 @@ package com.rackspace.salus.policy.manage.services;
 import static com.rackspace.salus.telemetry.messaging.KafkaMessageKeyBuilder.buildMessageKey;
 
 import com.rackspace.salus.common.messaging.KafkaTopicProperties;
+import com.rackspace.salus.telemetry.messaging.MetadataPolicyEvent;
 import com.rackspace.salus.telemetry.messaging.PolicyEvent;
 import com.rackspace.salus.telemetry.messaging.TenantPolicyChangeEvent;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.utils.Utils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.converter.AbstractJavaTypeMapper;
 import org.springframework.stereotype.Service;
 
 @Service
 @Slf4j
 public class PolicyEventProducer {
 
+  /**
+   * The record header holding the group of the policy changed by a policy event.
+   */
+  static final String HEADER_POLICY_GROUP = "policy-group";
+
+  /**
+   * The record headers holding the changed policy and the tenant of a policy event, so
+   * consumers within this service need not parse the event.
+   */
+  static final String HEADER_POLICY_ID = "policy-id";
+  static final String HEADER_TENANT_ID = "tenant-id";
+
+  /**
+   * The record header holding the target class name of a metadata policy event.
+   */
+  static final String HEADER_TARGET_CLASS = "target-class";
+
+  /**
+   * The record header identifying the replica that sent an event, so it can skip the
+   * invalidation of caches it already updated when writing the change.
+   */
+  static final String HEADER_ORIGIN = "policy-origin";
+
   private final KafkaTemplate<String,Object> kafkaTemplate;
   private final KafkaTopicProperties properties;
 
+  private final String origin = UUID.randomUUID().toString();
+
+  private volatile int partitionCount;
+
   @Autowired
   public PolicyEventProducer(KafkaTemplate<String,Object> kafkaTemplate, KafkaTopicProperties properties) {
     this.kafkaTemplate = kafkaTemplate;
     this.properties= properties;
   }
 
-  void sendPolicyEvent(PolicyEvent event) {
+  /**
+   * Sends a policy event along with the group of the changed policy, which consumers use to
+   * describe the change without looking up the policy. The ids held by the event are also
+   * written to headers, so the event is never parsed by this service's own consumers.
+   *
+   * @param event The event to send.
+   * @param group The name, or monitor type and key, shared by the policies competing with the
+   *              changed policy.
+   */
+  void sendPolicyEvent(PolicyEvent event, String group) {
     final String topic = properties.getPolicies();
 
     log.debug("Sending policyEvent={} on topic={}", event, topic);
-    kafkaTemplate.send(topic, buildMessageKey(event), event);
+    final ProducerRecord<String, Object> record =
+        new ProducerRecord<>(topic, buildMessageKey(event), event);
+    addPolicyHeaders(record.headers(), event, group);
+    kafkaTemplate.send(record);
+  }
+
+  /**
+   * Sends a record without a payload that tells the other replicas of this service to
+   * invalidate a changed policy, since a change may affect no tenant and send no policy event.
+   * Other consumers of the topic receive a null value, which they already skip.
+   *
+   * @param change An event holding the id of the changed policy and no tenant.
+   * @param group The name, or monitor type and key, shared by the policies competing with the
+   *              changed policy.
+   */
+  void sendPolicyInvalidation(PolicyEvent change, String group) {
+    final String topic = properties.getPolicies();
+
+    log.debug("Sending invalidation of policyId={} on topic={}", change.getPolicyId(), topic);
+    final ProducerRecord<String, Object> record =
+        new ProducerRecord<>(topic, change.getPolicyId().toString(), null);
+    final Headers headers = record.headers();
+    // the serializer writes no type header for a null value, but the listener routes on it
+    headers.add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+        change.getClass().getName().getBytes(StandardCharsets.UTF_8));
+    addPolicyHeaders(headers, change, group);
+    kafkaTemplate.send(record);
+  }
+
+  private void addPolicyHeaders(Headers headers, PolicyEvent event, String group) {
+    headers.add(HEADER_POLICY_GROUP, group.getBytes(StandardCharsets.UTF_8));
+    headers.add(HEADER_POLICY_ID, event.getPolicyId().toString().getBytes(StandardCharsets.UTF_8));
+    if (event.getTenantId() != null) {
+      headers.add(HEADER_TENANT_ID, event.getTenantId().getBytes(StandardCharsets.UTF_8));
+    }
+    if (event instanceof MetadataPolicyEvent
+        && ((MetadataPolicyEvent) event).getTargetClassName() != null) {
+      headers.add(HEADER_TARGET_CLASS, ((MetadataPolicyEvent) event).getTargetClassName().name()
+          .getBytes(StandardCharsets.UTF_8));
+    }
+    headers.add(HEADER_ORIGIN, origin.getBytes(StandardCharsets.UTF_8));
   }
 
   void sendTenantChangeEvent(TenantPolicyChangeEvent event) {
     final String topic = properties.getPolicies();
 
     log.debug("Sending tenantChangeEvent={} on topic={}", event, topic);
-    kafkaTemplate.send(topic, buildMessageKey(event), event);
+    final ProducerRecord<String, Object> record =
+        new ProducerRecord<>(topic, buildMessageKey(event), event);
+    record.headers().add(HEADER_ORIGIN, origin.getBytes(StandardCharsets.UTF_8));
+    kafkaTemplate.send(record);
+  }
+
+  /**
+   * Gets the id this replica tags the events it sends with.
+   *
+   * @return The origin header value of this replica's events.
+   */
+  String getOrigin() {
+    return origin;
+  }
+
+  /**
+   * Gets the number of partitions of the policies topic.
+   * The value is looked up from the broker metadata on first use and then reused.
+   *
+   * @return The partition count, or 0 if it could not be determined.
+   */
+  int getPartitionCount() {
+    if (partitionCount <= 0) {
+      try {
+        partitionCount = kafkaTemplate.partitionsFor(properties.getPolicies()).size();
+      } catch (Exception e) {
+        log.warn("Unable to determine partition count of topic={}", properties.getPolicies(), e);
+        return 0;
+      }
+    }
+    return partitionCount;
+  }
+
+  /**
+   * Determines which of the given number of partitions an event will be written to.
+   * This uses the same hashing of the message key as the default Kafka partitioner.
+   *
+   * @param event The event to locate.
+   * @param partitions The number of partitions to choose from.
+   * @return The zero-based partition index.
+   */
+  static int partitionFor(PolicyEvent event, int partitions) {
+    final byte[] keyBytes = buildMessageKey(event).getBytes(StandardCharsets.UTF_8);
+    return Utils.toPositive(Utils.murmur2(keyBytes)) % partitions;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event covering the sending of the policy events of one policy change.
+ */
+@Name("com.rackspace.salus.policy.Fanout")
+@Label("Policy Event Fan-out")
+@Category({"Salus", "Policy Management"})
+@Description("Sends the policy events of a policy change to the affected tenants")
+@StackTrace(false)
+class PolicyFanoutEvent extends Event {
+
+  @Label("Policy Id")
+  String policyId;
+
+  @Label("Policy Type")
+  String policyType;
+
+  @Label("Scope")
+  String scope;
+
+  @Label("Subscope")
+  String subscope;
+
+  @Label("Tenant Count")
+  int tenantCount;
+}
@@ -17,7 +17,6 @@
 package com.rackspace.salus.policy.manage.services;
 
 import com.rackspace.salus.telemetry.entities.Policy;
-import com.rackspace.salus.telemetry.model.PolicyScope;
 import com.rackspace.salus.telemetry.repositories.PolicyRepository;
 import java.util.Collections;
 import java.util.List;
@@ -31,14 +30,14 @@ public class PolicyManagement {
 
   private final PolicyRepository policyRepository;
   private final EntityManager entityManager;
-  private final TenantManagement tenantManagement;
+  private final PolicyTracing policyTracing;
 
   public PolicyManagement(
       PolicyRepository policyRepository, EntityManager entityManager,
-      TenantManagement tenantManagement) {
+      PolicyTracing policyTracing) {
     this.policyRepository = policyRepository;
     this.entityManager = entityManager;
-    this.tenantManagement = tenantManagement;
+    this.policyTracing = policyTracing;
   }
 
   public Optional<Policy> getPolicyById(UUID id) {
@@ -46,6 +45,16 @@ public class PolicyManagement {
   }
 
   List<String> getTenantsForPolicy(Policy policy) {
+    return policyTracing.inSpan("get-tenants-for-policy", span -> {
+      span.tag(PolicyTracing.TAG_POLICY_ID, String.valueOf(policy.getId()));
+      span.tag(PolicyTracing.TAG_POLICY_SCOPE, String.valueOf(policy.getScope()));
+      List<String> tenantIds = findTenantsForPolicy(policy);
+      span.tag(PolicyTracing.TAG_TENANT_COUNT, String.valueOf(tenantIds.size()));
+      return tenantIds;
+    });
+  }
+
+  private List<String> findTenantsForPolicy(Policy policy) {
     List<String> tenantIds;
     switch (policy.getScope()) {
       case GLOBAL:
@@ -80,19 +89,4 @@ public class PolicyManagement {
         .setParameter("accountType", accountType)
         .getResultList();
   }
-
-  /**
-   * Determines whether the given policy is relevant to the tenant.
-   *
-   * @param policy The policy to evaluate.
-   * @param tenantId The tenant to evaluate.
-   * @return True if the policy is relevant, even if it is currently overridden. False otherwise.
-   */
-  boolean isPolicyApplicable(Policy policy, String tenantId) {
-    String accountType = tenantManagement.getAccountTypeByTenant(tenantId);
-
-    return policy.getScope().equals(PolicyScope.GLOBAL) ||
-        (policy.getScope().equals(PolicyScope.ACCOUNT_TYPE) && policy.getSubscope().equals(accountType)) ||
-        (policy.getScope().equals(PolicyScope.TENANT) && policy.getSubscope().equals(tenantId));
-  }
 }
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.common.config.MetricNames;
+import com.rackspace.salus.common.config.MetricTags;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the meters recorded on each policy management operation and error.
+ *
+ * <p>
+ *   Each service registers the meters of its operations once at construction and keeps the
+ *   returned {@link Operation}, so recording an operation is an increment and a timer update
+ *   with no registry lookup or tag allocation. Error counters and the statement summaries
+ *   of each request are registered on first use and then reused from maps keyed by request
+ *   pattern.
+ * </p>
+ */
+@Component
+public class PolicyManagementMetrics {
+
+  static final String METRIC_OPERATION_DURATION = "policy_mgmt.operation";
+  static final String METRIC_RESOLUTION_PHASE = "policy_mgmt.resolution.phase";
+  static final String METRIC_REQUEST_STATEMENTS = "policy_mgmt.request.statements";
+  static final String METRIC_REQUEST_DB_TIME = "policy_mgmt.request.db.time";
+  static final String METRIC_EVENT_BATCH_DURATION = "policy_mgmt.events.batch";
+  static final String METRIC_EVENT_BATCH_SIZE = "policy_mgmt.events.batch.size";
+  static final String METRIC_EVENT_LAG = "policy_mgmt.events.lag";
+  static final String METRIC_CACHE_INVALIDATION = "policy_mgmt.cache.invalidation";
+  static final String TAG_METHOD = "method";
+  static final String TAG_PHASE = "phase";
+  static final String TAG_CANDIDATES = "candidates";
+  static final String TAG_RESULTS = "results";
+
+  public static final String PHASE_TENANT_LOOKUP = "tenant_lookup";
+  public static final String PHASE_RESOLVE = "resolve";
+  public static final String PHASE_FILTER = "filter";
+  public static final String PHASE_DTO = "dto";
+
+  // the upper bound of each policy count bucket used to tag the phase timers
+  private static final int[] COUNT_BUCKETS = {0, 10, 100, 1000};
+  private static final String[] COUNT_BUCKET_TAGS = {"0", "1-10", "11-100", "101-1000", "1000+"};
+
+  private final MeterRegistry meterRegistry;
+  private final ConcurrentMap<String, DistributionSummary[]> requestStatements =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<Class<?>, Counter>> failures =
+      new ConcurrentHashMap<>();
+
+  @Autowired
+  public PolicyManagementMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Registers the meters of a service operation.
+   *
+   * @param service The name of the service performing the operation.
+   * @param operation The operation, such as create, update or remove.
+   * @param objectType The type of object the operation acts on.
+   * @return The meters to record each completed operation with.
+   */
+  public Operation operation(String service, String operation, String objectType) {
+    return new Operation(
+        Counter.builder(MetricNames.SERVICE_OPERATION_SUCCEEDED)
+            .tags(MetricTags.SERVICE_METRIC_TAG, service,
+                MetricTags.OPERATION_METRIC_TAG, operation,
+                MetricTags.OBJECT_TYPE_METRIC_TAG, objectType)
+            .register(meterRegistry),
+        Timer.builder(METRIC_OPERATION_DURATION)
+            .tags(MetricTags.SERVICE_METRIC_TAG, service,
+                MetricTags.OPERATION_METRIC_TAG, operation,
+                MetricTags.OBJECT_TYPE_METRIC_TAG, objectType)
+            .register(meterRegistry));
+  }
+
+  /**
+   * Creates the timers of the phases of an effective policy resolution method.
+   *
+   * @param method The name of the method.
+   * @return The timers to record each phase with.
+   */
+  public PhaseTimers phaseTimers(String method) {
+    return new PhaseTimers(meterRegistry, method);
+  }
+
+  /**
+   * Registers the meters of the batches of policy events consumed by this replica.
+   *
+   * @return The meters to record each batch with.
+   */
+  public EventBatches eventBatches() {
+    return new EventBatches(
+        Timer.builder(METRIC_EVENT_BATCH_DURATION)
+            .register(meterRegistry),
+        DistributionSummary.builder(METRIC_EVENT_BATCH_SIZE)
+            .baseUnit("events")
+            .register(meterRegistry),
+        DistributionSummary.builder(METRIC_EVENT_LAG)
+            .baseUnit("records")
+            .register(meterRegistry),
+        Timer.builder(METRIC_CACHE_INVALIDATION)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+  }
+
+  /**
+   * Counts a request that failed with the given exception.
+   *
+   * @param uri The pattern of the request mapping that failed.
+   * @param exceptionType The type of exception raised.
+   */
+  public void failed(String uri, Class<? extends Exception> exceptionType) {
+    ConcurrentMap<Class<?>, Counter> counters = failures.get(uri);
+    if (counters == null) {
+      counters = failures.computeIfAbsent(uri, key -> new ConcurrentHashMap<>());
+    }
+    Counter counter = counters.get(exceptionType);
+    if (counter == null) {
+      counter = counters.computeIfAbsent(exceptionType,
+          type -> Counter.builder(MetricNames.SERVICE_OPERATION_FAILED)
+              .tags(MetricTags.URI_METRIC_TAG, uri,
+                  MetricTags.EXCEPTION_METRIC_TAG, type.getSimpleName())
+              .register(meterRegistry));
+    }
+    counter.increment();
+  }
+
+  /**
+   * Records the JDBC statements executed while handling a request.
+   *
+   * @param uri The pattern of the request mapping that was handled.
+   * @param statements The number of statements executed.
+   * @param dbNanos The total time spent executing the statements.
+   */
+  public void requestStatements(String uri, int statements, long dbNanos) {
+    DistributionSummary[] summaries = requestStatements.get(uri);
+    if (summaries == null) {
+      summaries = requestStatements.computeIfAbsent(uri, key -> new DistributionSummary[]{
+          DistributionSummary.builder(METRIC_REQUEST_STATEMENTS)
+              .baseUnit("statements")
+              .tag(MetricTags.URI_METRIC_TAG, uri)
+              .register(meterRegistry),
+          DistributionSummary.builder(METRIC_REQUEST_DB_TIME)
+              .baseUnit("milliseconds")
+              .tag(MetricTags.URI_METRIC_TAG, uri)
+              .register(meterRegistry)
+      });
+    }
+    summaries[0].record(statements);
+    summaries[1].record(dbNanos / 1_000_000.0);
+  }
+
+  static String countBucket(int count) {
+    return COUNT_BUCKET_TAGS[countBucketIndex(count)];
+  }
+
+  private static int countBucketIndex(int count) {
+    for (int i = 0; i < COUNT_BUCKETS.length; i++) {
+      if (count <= COUNT_BUCKETS[i]) {
+        return i;
+      }
+    }
+    return COUNT_BUCKETS.length;
+  }
+
+  /**
+   * The percentile histogram timers of each phase of one method.
+   * The timers are tagged with the bucketed number of candidate and result policies so slow
+   * resolutions can be attributed to the size of the tenant's policy set. Each combination
+   * is registered on first use and then reused.
+   */
+  public static class PhaseTimers {
+
+    private final MeterRegistry meterRegistry;
+    private final String method;
+
+    /**
+     * The timers of each phase, indexed by the candidates bucket and then the results bucket
+     * so recording a phase allocates no key.
+     */
+    private final ConcurrentMap<String, AtomicReferenceArray<Timer>> timers =
+        new ConcurrentHashMap<>();
+
+    PhaseTimers(MeterRegistry meterRegistry, String method) {
+      this.meterRegistry = meterRegistry;
+      this.method = method;
+    }
+
+    /**
+     * Records the duration of a phase.
+     * The phases of a call are recorded once it completes, since the tags depend on its result.
+     *
+     * @param phase The phase, such as {@link #PHASE_RESOLVE}.
+     * @param startNanos The {@link System#nanoTime()} at which the phase started.
+     * @param endNanos The {@link System#nanoTime()} at which the phase ended.
+     * @param candidates The number of policies considered by the call.
+     * @param results The number of policies returned by the call.
+     */
+    public void record(String phase, long startNanos, long endNanos, int candidates, int results) {
+      AtomicReferenceArray<Timer> phaseTimers = timers.get(phase);
+      if (phaseTimers == null) {
+        phaseTimers = timers.computeIfAbsent(phase,
+            key -> new AtomicReferenceArray<>(COUNT_BUCKET_TAGS.length * COUNT_BUCKET_TAGS.length));
+      }
+      final int candidatesBucket = countBucketIndex(candidates);
+      final int resultsBucket = countBucketIndex(results);
+      final int index = candidatesBucket * COUNT_BUCKET_TAGS.length + resultsBucket;
+      Timer timer = phaseTimers.get(index);
+      if (timer == null) {
+        // the registry returns the timer already registered by a concurrent call
+        timer = Timer.builder(METRIC_RESOLUTION_PHASE)
+            .tags(TAG_METHOD, method, TAG_PHASE, phase,
+                TAG_CANDIDATES, COUNT_BUCKET_TAGS[candidatesBucket],
+                TAG_RESULTS, COUNT_BUCKET_TAGS[resultsBucket])
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        phaseTimers.set(index, timer);
+      }
+      timer.record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * The pre-registered meters of the policy event batches.
+   */
+  public static class EventBatches {
+
+    private final Timer duration;
+    private final DistributionSummary size;
+    private final DistributionSummary lag;
+    private final Timer invalidation;
+
+    EventBatches(Timer duration, DistributionSummary size, DistributionSummary lag,
+        Timer invalidation) {
+      this.duration = duration;
+      this.size = size;
+      this.lag = lag;
+      this.invalidation = invalidation;
+    }
+
+    /**
+     * Records a processed batch.
+     *
+     * @param size The number of events in the batch.
+     * @param startNanos The {@link System#nanoTime()} at which processing of the batch started.
+     */
+    public void processed(int size, long startNanos) {
+      this.size.record(size);
+      duration.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records how far the consumer was behind the end of the topic after a batch.
+     *
+     * @param records The greatest number of records not yet consumed from any partition.
+     */
+    public void lag(double records) {
+      lag.record(records);
+    }
+
+    /**
+     * Records how long after a change the local caches were invalidated.
+     * The compiled policies are rebuilt on the next check after being invalidated, so this does
+     * not include the time until the change is reflected in resolved policies.
+     *
+     * @param millis The time from the oldest change in a batch being written to the topic until
+     *               the local caches were invalidated.
+     */
+    public void invalidated(long millis) {
+      invalidation.record(Math.max(millis, 0), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * The pre-registered meters of one service operation.
+   */
+  public static class Operation {
+
+    private final Counter succeeded;
+    private final Timer duration;
+
+    Operation(Counter succeeded, Timer duration) {
+      this.succeeded = succeeded;
+      this.duration = duration;
+    }
+
+    /**
+     * Records a successful operation.
+     *
+     * @param startNanos The {@link System#nanoTime()} at which the operation started.
+     */
+    public void succeeded(long startNanos) {
+      succeeded.increment();
+      duration.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+}
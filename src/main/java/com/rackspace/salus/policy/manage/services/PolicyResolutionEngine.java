@@ -0,0 +1,242 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.policy.manage.web.model.MetadataValues;
+import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
+import com.rackspace.salus.telemetry.entities.MonitorPolicy;
+import com.rackspace.salus.telemetry.entities.Policy;
+import com.rackspace.salus.telemetry.model.MonitorType;
+import com.rackspace.salus.telemetry.repositories.MonitorMetadataPolicyRepository;
+import com.rackspace.salus.telemetry.repositories.MonitorPolicyRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves the effective monitor and metadata policies of a tenant from compiled,
+ * in-memory copies of all policies.
+ *
+ * <p>
+ *   Each policy type is compiled into an immutable {@link CompiledPolicies} that is swapped
+ *   whole when the policies change, so resolving a tenant takes no lock and never touches the
+ *   database. Changes made through this replica recompile the affected type immediately, before
+ *   their events are sent. Changes made by other replicas are seen through their policy events,
+ *   which mark the policies as stale to be recompiled on the next check, so a burst of changes
+ *   costs a single recompile. A periodic full recompile bounds how long any missed change
+ *   remains unseen.
+ * </p>
+ */
+@Service
+@Slf4j
+public class PolicyResolutionEngine {
+
+  private final MonitorPolicyRepository monitorPolicyRepository;
+  private final MonitorMetadataPolicyRepository monitorMetadataPolicyRepository;
+  private final PolicyChangeLog policyChangeLog;
+  private final AtomicBoolean stale = new AtomicBoolean();
+
+  private final Compiled<String, MonitorPolicy> monitorPolicies = new Compiled<>();
+  private final Compiled<Pair<MonitorType, String>, MonitorMetadataPolicy> metadataPolicies =
+      new Compiled<>();
+
+  @Autowired
+  public PolicyResolutionEngine(MonitorPolicyRepository monitorPolicyRepository,
+      MonitorMetadataPolicyRepository monitorMetadataPolicyRepository,
+      PolicyChangeLog policyChangeLog) {
+    this.monitorPolicyRepository = monitorPolicyRepository;
+    this.monitorMetadataPolicyRepository = monitorMetadataPolicyRepository;
+    this.policyChangeLog = policyChangeLog;
+  }
+
+  /**
+   * Resolves the monitor policies of a tenant, with one policy per name.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return The tenant's effective monitor policies and the number of candidates considered.
+   */
+  CompiledPolicies.Resolution<MonitorPolicy> resolveMonitorPolicies(String tenantId,
+      String accountType) {
+    return monitorPolicies.current.resolve(tenantId, accountType);
+  }
+
+  /**
+   * Resolves the ids of a tenant's monitor policies without materializing the policies.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @param includeNullMonitors Whether to include the policies that opt out of a monitor.
+   * @return A new list of the ids of the tenant's effective monitor policies.
+   */
+  public List<UUID> resolveMonitorPolicyIds(String tenantId, String accountType,
+      boolean includeNullMonitors) {
+    return monitorPolicies.current.resolvePolicyIds(tenantId, accountType, includeNullMonitors);
+  }
+
+  /**
+   * Resolves the monitor templates applied by a tenant's monitor policies.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return A new list of the monitor template ids of the tenant's effective monitor policies.
+   */
+  public List<UUID> resolveMonitorTemplateIds(String tenantId, String accountType) {
+    return monitorPolicies.current.resolveMonitorIds(tenantId, accountType);
+  }
+
+  /**
+   * Resolves the metadata policies of a tenant, with one policy per monitor type and key.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return The tenant's effective metadata policies and the number of candidates considered.
+   */
+  CompiledPolicies.Resolution<MonitorMetadataPolicy> resolveMetadataPolicies(String tenantId,
+      String accountType) {
+    return metadataPolicies.current.resolve(tenantId, accountType);
+  }
+
+  /**
+   * Lists the monitor policies considered when resolving a tenant.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return The candidate monitor policies, each marked with whether it is effective.
+   */
+  List<CompiledPolicies.Candidate<String, MonitorPolicy>> explainMonitorPolicies(
+      String tenantId, String accountType) {
+    return monitorPolicies.current.explain(tenantId, accountType);
+  }
+
+  /**
+   * Lists the metadata policies considered when resolving a tenant.
+   *
+   * @param tenantId The tenant to resolve.
+   * @param accountType The account type of the tenant, if it has one.
+   * @return The candidate metadata policies, each marked with whether it is effective.
+   */
+  List<CompiledPolicies.Candidate<Pair<MonitorType, String>, MonitorMetadataPolicy>> explainMetadataPolicies(
+      String tenantId, String accountType) {
+    return metadataPolicies.current.explain(tenantId, accountType);
+  }
+
+  /**
+   * Gets the typed form of a metadata policy's value as described by {@link MetadataValues}.
+   * The values of the compiled policies are parsed as they are compiled, so only a policy
+   * resolved before the latest recompile is parsed here.
+   *
+   * @param policy A metadata policy resolved by this engine.
+   * @return The typed value, or null if the stored value cannot be parsed as its type.
+   */
+  public Object getTypedValue(MonitorMetadataPolicy policy) {
+    return metadataPolicies.current.valueOf(policy, PolicyResolutionEngine::parseValue);
+  }
+
+  private static Object parseValue(MonitorMetadataPolicy policy) {
+    return MetadataValues.parseOrNull(policy.getValueType(), policy.getValue());
+  }
+
+  /**
+   * Indicates a policy may have been changed by another replica.
+   */
+  void markStale() {
+    stale.set(true);
+  }
+
+  @Scheduled(fixedDelayString = "#{@policyResolutionProperties.reloadDelay.toMillis()}")
+  public void reloadIfStale() {
+    if (stale.getAndSet(false)) {
+      reload();
+    }
+  }
+
+  @Scheduled(fixedDelayString = "#{@policyResolutionProperties.refreshInterval.toMillis()}",
+      initialDelayString = "#{@policyResolutionProperties.refreshInterval.toMillis()}")
+  public void refresh() {
+    reload();
+  }
+
+  /**
+   * Recompiles all policies currently stored.
+   */
+  @PostConstruct
+  public void reload() {
+    reloadMonitorPolicies();
+    reloadMetadataPolicies();
+  }
+
+  /**
+   * Recompiles the monitor policies currently stored.
+   */
+  public void reloadMonitorPolicies() {
+    final long generation = monitorPolicies.generation.incrementAndGet();
+    // every change consumed before the policies are read is included in what they compile to
+    final Map<Integer, Long> positions = policyChangeLog.positions();
+    final CompiledPolicies<String, MonitorPolicy> loaded =
+        CompiledPolicies.compile(monitorPolicyRepository.findAll(),
+            MonitorPolicy::getName, MonitorPolicy::getMonitorTemplateId);
+    if (monitorPolicies.swap(generation, loaded)) {
+      policyChangeLog.compiled(PolicyChangeLog.PolicyType.MONITOR, positions);
+    }
+    log.debug("Compiled {} monitor policies", loaded.size());
+  }
+
+  /**
+   * Recompiles the metadata policies currently stored.
+   */
+  public void reloadMetadataPolicies() {
+    final long generation = metadataPolicies.generation.incrementAndGet();
+    final Map<Integer, Long> positions = policyChangeLog.positions();
+    final CompiledPolicies<Pair<MonitorType, String>, MonitorMetadataPolicy> loaded =
+        CompiledPolicies.compile(monitorMetadataPolicyRepository.findAll(),
+            policy -> Pair.of(policy.getMonitorType(), policy.getKey()), policy -> null,
+            PolicyResolutionEngine::parseValue);
+    if (metadataPolicies.swap(generation, loaded)) {
+      policyChangeLog.compiled(PolicyChangeLog.PolicyType.METADATA, positions);
+    }
+    log.debug("Compiled {} metadata policies", loaded.size());
+  }
+
+  /**
+   * Holds the current compiled policies of one type.
+   * Each load is numbered as it starts so a slow load cannot replace the result of one that
+   * started later and may have seen a more recent change.
+   */
+  private static class Compiled<K, T extends Policy> {
+    final AtomicLong generation = new AtomicLong();
+    volatile CompiledPolicies<K, T> current = CompiledPolicies.empty();
+    private long appliedGeneration;
+
+    synchronized boolean swap(long loadedGeneration, CompiledPolicies<K, T> loaded) {
+      if (loadedGeneration > appliedGeneration) {
+        appliedGeneration = loadedGeneration;
+        current = loaded;
+        return true;
+      }
+      return false;
+    }
+  }
+}
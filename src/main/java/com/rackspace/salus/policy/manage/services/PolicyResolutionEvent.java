@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event covering the resolution of a tenant's effective policies.
+ */
+@Name("com.rackspace.salus.policy.Resolution")
+@Label("Policy Resolution")
+@Category({"Salus", "Policy Management"})
+@Description("Resolves the effective monitor or metadata policies of a tenant")
+@StackTrace(false)
+class PolicyResolutionEvent extends Event {
+
+  @Label("Tenant Id")
+  String tenantId;
+
+  @Label("Policy Type")
+  String policyType;
+
+  @Label("Candidates")
+  @Description("The number of policies considered")
+  int candidates;
+
+  @Label("Results")
+  @Description("The number of effective policies")
+  int results;
+}
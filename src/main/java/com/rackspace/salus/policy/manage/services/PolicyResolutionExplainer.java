@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.policy.manage.config.JdbcStatementListener;
+import com.rackspace.salus.policy.manage.web.model.PolicyResolutionExplanationDTO;
+import com.rackspace.salus.policy.manage.web.model.PolicyResolutionExplanationDTO.Candidate;
+import com.rackspace.salus.policy.manage.web.model.PolicyResolutionExplanationDTO.Step;
+import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
+import com.rackspace.salus.telemetry.entities.MonitorPolicy;
+import com.rackspace.salus.telemetry.entities.Policy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Explains how a tenant's effective policies are resolved, for diagnosing slow tenants.
+ *
+ * <p>
+ *   Each step of the resolution is timed and the SQL statements executed during it are counted
+ *   by the {@link JdbcStatementListener} of the current thread, so statements run concurrently
+ *   by other requests are not included.
+ * </p>
+ */
+@Service
+@Slf4j
+public class PolicyResolutionExplainer {
+
+  static final String STEP_TENANT_LOOKUP = "tenant_lookup";
+  static final String STEP_MONITOR_POLICIES = "monitor_policies";
+  static final String STEP_METADATA_POLICIES = "metadata_policies";
+
+  private final TenantManagement tenantManagement;
+  private final PolicyResolutionEngine policyResolutionEngine;
+
+  @Autowired
+  public PolicyResolutionExplainer(TenantManagement tenantManagement,
+      PolicyResolutionEngine policyResolutionEngine) {
+    this.tenantManagement = tenantManagement;
+    this.policyResolutionEngine = policyResolutionEngine;
+  }
+
+  /**
+   * Resolves the effective monitor and metadata policies of a tenant and explains the result.
+   *
+   * @param tenantId The tenant to resolve.
+   * @return Every candidate policy and whether it won its name or key, along with the
+   * duration and statement count of each step.
+   */
+  public PolicyResolutionExplanationDTO explain(String tenantId) {
+    log.debug("Explaining policy resolution of tenant={}", tenantId);
+    // web requests are already counted, so their counts are read rather than restarted
+    final boolean started = JdbcStatementListener.current() == null;
+    if (started) {
+      JdbcStatementListener.begin();
+    }
+    try {
+      final List<Step> steps = new ArrayList<>();
+
+      final String accountType = step(steps, STEP_TENANT_LOOKUP,
+          () -> tenantManagement.getAccountTypeByTenant(tenantId));
+      final List<Candidate> monitorPolicies = step(steps, STEP_MONITOR_POLICIES,
+          () -> toCandidates(policyResolutionEngine.explainMonitorPolicies(tenantId, accountType),
+              MonitorPolicy::getName));
+      final List<Candidate> metadataPolicies = step(steps, STEP_METADATA_POLICIES,
+          () -> toCandidates(policyResolutionEngine.explainMetadataPolicies(tenantId, accountType),
+              policy -> policy.getMonitorType() + "/" + policy.getKey()));
+
+      return new PolicyResolutionExplanationDTO()
+          .setTenantId(tenantId)
+          .setAccountType(accountType)
+          .setSteps(steps)
+          .setMonitorPolicies(monitorPolicies)
+          .setMetadataPolicies(metadataPolicies);
+    } finally {
+      if (started) {
+        JdbcStatementListener.end();
+      }
+    }
+  }
+
+  private <R> R step(List<Step> steps, String name, Supplier<R> supplier) {
+    final JdbcStatementListener.Counts counts = JdbcStatementListener.current();
+    final int statementsBefore = counts.getStatements();
+    final long start = System.nanoTime();
+
+    final R result = supplier.get();
+
+    steps.add(new Step()
+        .setName(name)
+        .setDurationMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start))
+        .setStatementCount(counts.getStatements() - statementsBefore));
+    return result;
+  }
+
+  private static <K, T extends Policy> List<Candidate> toCandidates(
+      List<CompiledPolicies.Candidate<K, T>> candidates, Function<T, String> keyGetter) {
+    return candidates.stream()
+        .map(candidate -> new Candidate()
+            .setKey(keyGetter.apply(candidate.getPolicy()))
+            .setPolicyId(candidate.getPolicy().getId())
+            .setScope(candidate.getPolicy().getScope())
+            .setSubscope(candidate.getPolicy().getSubscope())
+            .setEffective(candidate.isEffective()))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import brave.NoopSpanCustomizer;
+import brave.Span;
+import brave.SpanCustomizer;
+import brave.Tracer;
+import brave.Tracer.SpanInScope;
+import brave.Tracing;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps the policy operations worth following across services in tracing spans.
+ *
+ * <p>
+ *   Spans are started as children of the current request's span, so a policy change can be
+ *   followed from the admin request through to the policy events it sends, since the trace
+ *   context is written to the headers of each Kafka record sent within the span. When tracing
+ *   is not configured, such as in sliced tests, the operations run without a span.
+ * </p>
+ */
+@Component
+public class PolicyTracing {
+
+  static final String TAG_TENANT_ID = "tenant.id";
+  static final String TAG_POLICY_ID = "policy.id";
+  static final String TAG_POLICY_SCOPE = "policy.scope";
+  static final String TAG_TENANT_COUNT = "tenant.count";
+  static final String TAG_EVENT_COUNT = "event.count";
+  static final String TAG_CANDIDATE_COUNT = "candidate.count";
+  static final String TAG_RESULT_COUNT = "result.count";
+
+  private final Tracing tracing;
+
+  @Autowired
+  public PolicyTracing(ObjectProvider<Tracing> tracing) {
+    this(tracing.getIfAvailable());
+  }
+
+  PolicyTracing(Tracing tracing) {
+    this.tracing = tracing;
+  }
+
+  /**
+   * Runs the given work in a new span.
+   *
+   * @param name The name of the span.
+   * @param work The work to run, which can tag the span through the given customizer.
+   * @return The result of the work.
+   */
+  public <T> T inSpan(String name, Function<SpanCustomizer, T> work) {
+    if (tracing == null) {
+      return work.apply(NoopSpanCustomizer.INSTANCE);
+    }
+
+    final Tracer tracer = tracing.tracer();
+    final Span span = tracer.nextSpan().name(name).start();
+    try (SpanInScope ignored = tracer.withSpanInScope(span)) {
+      return work.apply(span);
+    } catch (RuntimeException | Error e) {
+      span.error(e);
+      throw e;
+    } finally {
+      span.finish();
+    }
+  }
+
+  /**
+   * Runs the given work in a new span.
+   *
+   * @param name The name of the span.
+   * @param work The work to run, which can tag the span through the given customizer.
+   */
+  public void runInSpan(String name, Consumer<SpanCustomizer> work) {
+    inSpan(name, span -> {
+      work.accept(span);
+      return null;
+    });
+  }
+
+  /**
+   * Wraps an executor so each task runs within the trace context it was submitted from.
+   *
+   * @param executor The executor to wrap.
+   * @return The wrapped executor, or the given one if tracing is not configured.
+   */
+  public ExecutorService wrap(ExecutorService executor) {
+    return tracing == null ? executor : tracing.currentTraceContext().executorService(executor);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.telemetry.entities.Policy;
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Indexes the policies that take priority over a given policy of the same name (or key).
+ *
+ * <p>
+ *   A tenant covered by any of those policies is shadowed, since its effective policy for the
+ *   name is unaffected by any change to the lower priority policy.
+ * </p>
+ */
+class ShadowIndex {
+
+  private final Set<String> tenantIds = new HashSet<>();
+  private final Set<String> accountTypes = new HashSet<>();
+
+  private ShadowIndex() {
+  }
+
+  /**
+   * Indexes the policies that take priority over the given policy.
+   *
+   * @param policy The policy being changed.
+   * @param sameNamePolicies All the policies sharing that policy's name, which may include the
+   *                         policy itself.
+   * @return The index.
+   */
+  static ShadowIndex of(Policy policy, Collection<? extends Policy> sameNamePolicies) {
+    final ShadowIndex index = new ShadowIndex();
+    for (Policy other : sameNamePolicies) {
+      if (other.getId().equals(policy.getId())
+          || other.getScope().getPriority() <= policy.getScope().getPriority()) {
+        continue;
+      }
+      if (other.getScope() == PolicyScope.TENANT) {
+        index.tenantIds.add(other.getSubscope());
+      } else if (other.getScope() == PolicyScope.ACCOUNT_TYPE) {
+        index.accountTypes.add(other.getSubscope());
+      }
+    }
+    return index;
+  }
+
+  boolean isEmpty() {
+    return tenantIds.isEmpty() && accountTypes.isEmpty();
+  }
+
+  /**
+   * @return True if the account type of each tenant is needed to evaluate the index.
+   */
+  boolean dependsOnAccountType() {
+    return !accountTypes.isEmpty();
+  }
+
+  /**
+   * Filters the given tenants down to those not shadowed by a higher priority policy.
+   *
+   * @param tenantIds The tenants covered by the changed policy.
+   * @param tenantAccountTypes The account type of each tenant that has one.
+   * @return The tenants whose effective policy may be affected.
+   */
+  List<String> removeShadowed(Collection<String> tenantIds, Map<String, String> tenantAccountTypes) {
+    return tenantIds.stream()
+        .filter(tenantId -> !this.tenantIds.contains(tenantId))
+        .filter(tenantId -> !accountTypes.contains(tenantAccountTypes.get(tenantId)))
+        .collect(Collectors.toList());
+  }
+}
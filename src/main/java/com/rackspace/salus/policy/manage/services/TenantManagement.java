@@ -16,17 +16,19 @@
 
 package com.rackspace.salus.policy.manage.services;
 
-import com.rackspace.salus.common.config.MetricNames;
 import com.rackspace.salus.common.config.MetricTagValues;
-import com.rackspace.salus.common.config.MetricTags;
+import com.rackspace.salus.policy.manage.repositories.TenantMetadataLookupRepository;
 import com.rackspace.salus.policy.manage.web.model.TenantMetadataCU;
 import com.rackspace.salus.telemetry.entities.TenantMetadata;
 import com.rackspace.salus.telemetry.errors.AlreadyExistsException;
 import com.rackspace.salus.telemetry.messaging.TenantPolicyChangeEvent;
 import com.rackspace.salus.telemetry.model.NotFoundException;
 import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,24 +42,34 @@ import org.springframework.stereotype.Service;
 public class TenantManagement {
 
   private final TenantMetadataRepository tenantMetadataRepository;
+  private final TenantMetadataLookupRepository tenantMetadataLookupRepository;
   private final PolicyEventProducer policyEventProducer;
 
-  MeterRegistry meterRegistry;
+  private static final String SERVICE_NAME = "TenantManagement";
 
-  // metrics counters
-  private final Counter.Builder tenantManagementSuccess;
+  private static final int ACCOUNT_TYPE_BATCH_SIZE = 1000;
+
+  // metrics for each operation
+  private final PolicyManagementMetrics.Operation tenantMetadataCreated;
+  private final PolicyManagementMetrics.Operation tenantMetadataUpdated;
+  private final PolicyManagementMetrics.Operation tenantMetadataRemoved;
 
   @Autowired
   public TenantManagement(
       TenantMetadataRepository tenantMetadataRepository,
+      TenantMetadataLookupRepository tenantMetadataLookupRepository,
       PolicyEventProducer policyEventProducer,
-      MeterRegistry meterRegistry) {
+      PolicyManagementMetrics policyManagementMetrics) {
     this.tenantMetadataRepository = tenantMetadataRepository;
+    this.tenantMetadataLookupRepository = tenantMetadataLookupRepository;
     this.policyEventProducer = policyEventProducer;
 
-    this.meterRegistry = meterRegistry;
-    tenantManagementSuccess = Counter.builder(MetricNames.SERVICE_OPERATION_SUCCEEDED)
-        .tag(MetricTags.SERVICE_METRIC_TAG,"TenantManagement");
+    tenantMetadataCreated = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.CREATE_OPERATION, "tenantMetadata");
+    tenantMetadataUpdated = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.UPDATE_OPERATION, "tenantMetadata");
+    tenantMetadataRemoved = policyManagementMetrics.operation(SERVICE_NAME,
+        MetricTagValues.REMOVE_OPERATION, "tenantMetadata");
   }
 
   /**
@@ -66,7 +78,7 @@ public class TenantManagement {
    * @return The full TenantMetadata object.
    */
   public Optional<TenantMetadata> getMetadata(String tenantId) {
-    return tenantMetadataRepository.findByTenantId(tenantId);
+    return tenantMetadataLookupRepository.findByTenantId(tenantId);
   }
   /**
    * Gets all known tenant metadata for a single tenant.
@@ -92,6 +104,25 @@ public class TenantManagement {
     return metadata.get().getAccountType();
   }
 
+  /**
+   * Gets the account type of each of the given tenants that has one set.
+   * The tenants are looked up in batches so the query's list of ids stays within what the
+   * database accepts.
+   *
+   * @param tenantIds The tenants to look up.
+   * @return A map of tenant id to account type.
+   */
+  public Map<String, String> getAccountTypes(Collection<String> tenantIds) {
+    final List<String> ids = new ArrayList<>(tenantIds);
+    final Map<String, String> accountTypes = new HashMap<>();
+    for (int from = 0; from < ids.size(); from += ACCOUNT_TYPE_BATCH_SIZE) {
+      tenantMetadataLookupRepository.findAccountTypesByTenantIdIn(
+          ids.subList(from, Math.min(from + ACCOUNT_TYPE_BATCH_SIZE, ids.size())))
+          .forEach(tenant -> accountTypes.put(tenant.getTenantId(), tenant.getAccountType()));
+    }
+    return accountTypes;
+  }
+
   /**
    * Update the information stored relating to an individual tenant.
    * @param tenantId The tenant to store this data under.
@@ -99,6 +130,7 @@ public class TenantManagement {
    * @return The full tenant information.
    */
   public TenantMetadata updateMetadata(String tenantId, TenantMetadataCU input) {
+    long start = System.nanoTime();
     log.info("Updating tenant metadata for {}", tenantId);
 
     TenantMetadata metadata = getMetadata(tenantId).orElseGet(() -> {
@@ -106,9 +138,7 @@ public class TenantManagement {
     });
 
     TenantMetadata updatedTenantMetadata = upsertTenantMetadata(tenantId, input, metadata);
-    tenantManagementSuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG,MetricTagValues.UPDATE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"tenantMetadata")
-        .register(meterRegistry).increment();
+    tenantMetadataUpdated.succeeded(start);
     return updatedTenantMetadata;
   }
 
@@ -119,6 +149,7 @@ public class TenantManagement {
    * @return The full tenant information
    */
   public TenantMetadata createMetadata(String tenantId, TenantMetadataCU input) {
+    long start = System.nanoTime();
     log.info("Creating tenant metadata for {}", tenantId);
     if(getMetadata(tenantId).isPresent()) {
       throw new AlreadyExistsException(String.format("Metadata already exists for tenant %s", tenantId));
@@ -127,9 +158,7 @@ public class TenantManagement {
     TenantMetadata tenantMetadata = new TenantMetadata()
         .setTenantId(tenantId);
     tenantMetadata = upsertTenantMetadata(tenantId, input, tenantMetadata);
-    tenantManagementSuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG,MetricTagValues.CREATE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"tenantMetadata")
-        .register(meterRegistry).increment();
+    tenantMetadataCreated.succeeded(start);
     return tenantMetadata;
   }
 
@@ -149,15 +178,14 @@ public class TenantManagement {
   }
 
   public void removeTenantMetadata(String tenantId) {
+    long start = System.nanoTime();
     TenantMetadata metadata = getMetadata(tenantId).orElseThrow(() ->
         new NotFoundException(
             String.format("No metadata found for tenant %s", tenantId)));
 
     tenantMetadataRepository.delete(metadata);
     sendTenantChangeEvents(tenantId);
-    tenantManagementSuccess
-        .tags(MetricTags.OPERATION_METRIC_TAG,MetricTagValues.REMOVE_OPERATION,MetricTags.OBJECT_TYPE_METRIC_TAG,"tenantMetadata")
-        .register(meterRegistry).increment();
+    tenantMetadataRemoved.succeeded(start);
   }
 
   private void sendTenantChangeEvents(String tenantId) {
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.converter.AbstractJavaTypeMapper;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+/**
+ * Deserializes only the policy event records that have a handler, based on their type header.
+ *
+ * <p>
+ *   Records of a type with no handler are given the value {@link PolicyEventHandlers#UNHANDLED}
+ *   without reading their payload, and are then discarded by the container's record filter.
+ *   Records of a type whose handler reads the record headers are given an
+ *   {@link PolicyEventHandlers.Unparsed} that parses the payload only if asked to.
+ *   Only the remaining records are parsed by the JSON deserializer.
+ * </p>
+ */
+public class TypeHeaderFilteringDeserializer implements Deserializer<Object> {
+
+  private final PolicyEventHandlers handlers;
+  private final JsonDeserializer<Object> delegate;
+  private boolean configured;
+
+  public TypeHeaderFilteringDeserializer(PolicyEventHandlers handlers) {
+    this.handlers = handlers;
+    this.delegate = new JsonDeserializer<>();
+  }
+
+  @Override
+  public synchronized void configure(Map<String, ?> configs, boolean isKey) {
+    // configured by the consumer factory and explicitly, so only apply the first
+    if (!configured) {
+      delegate.configure(configs, isKey);
+      configured = true;
+    }
+  }
+
+  @Override
+  public Object deserialize(String topic, Headers headers, byte[] data) {
+    final Header typeHeader = headers.lastHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
+    if (typeHeader == null) {
+      // without a type header the record can only be identified by parsing it
+      return delegate.deserialize(topic, headers, data);
+    }
+
+    final PolicyEventHandlers.Handler handler = handlers.get(
+        new String(typeHeader.value(), StandardCharsets.UTF_8));
+    if (handler == null) {
+      return PolicyEventHandlers.UNHANDLED;
+    }
+    if (!handler.isPayloadRequired()) {
+      return new PolicyEventHandlers.Unparsed(handler, headers,
+          () -> delegate.deserialize(topic, headers, data));
+    }
+    return delegate.deserialize(topic, headers, data);
+  }
+
+  @Override
+  public Object deserialize(String topic, byte[] data) {
+    return delegate.deserialize(topic, data);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import com.rackspace.salus.policy.manage.repositories.MonitorMetadataPolicyLookupRepository;
+import com.rackspace.salus.policy.manage.web.model.MetadataValues;
+import com.rackspace.salus.telemetry.entities.MetadataPolicy;
+import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import com.rackspace.salus.telemetry.model.TargetClassName;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Holds the default monitoring zones of each region in memory.
+ *
+ * <p>
+ *   The table is loaded from the zone policies at startup and is replaced whole on each change,
+ *   so lookups never touch the database or take a lock. Changes made through this replica are
+ *   applied immediately. Changes made by other replicas are seen through their policy events,
+ *   which mark the table as stale to be reloaded on the next check, and a periodic full reload
+ *   bounds how long any missed change remains unseen.
+ * </p>
+ * <p>
+ *   Each reload and local change is numbered as it starts, so a reload that read the database
+ *   before a local change cannot replace the table with content older than that change.
+ * </p>
+ */
+@Service
+@Slf4j
+public class ZonePolicyTable {
+
+  private final MonitorMetadataPolicyLookupRepository monitorMetadataPolicyLookupRepository;
+  private final AtomicBoolean stale = new AtomicBoolean();
+  private final AtomicLong generation = new AtomicLong();
+
+  private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+  private long appliedGeneration;
+
+  @Autowired
+  public ZonePolicyTable(MonitorMetadataPolicyLookupRepository monitorMetadataPolicyLookupRepository) {
+    this.monitorMetadataPolicyLookupRepository = monitorMetadataPolicyLookupRepository;
+  }
+
+  /**
+   * Gets the default monitoring zones of a region.
+   *
+   * @param region The region to look up.
+   * @return The immutable list of zones, or an empty list if the region has no zone policy.
+   */
+  public List<String> getZones(String region) {
+    return snapshot.getZonesByRegion().getOrDefault(region, Collections.emptyList());
+  }
+
+  /**
+   * Gets the default monitoring zones of all regions along with the version of that content.
+   *
+   * @return The current immutable snapshot of the table.
+   */
+  public Snapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Tests whether the policy holds the default monitoring zones of a region.
+   *
+   * @param policy The policy to test.
+   * @return True if the policy is a zone policy, false otherwise.
+   */
+  static boolean isZonePolicy(MetadataPolicy policy) {
+    return policy.getScope() == PolicyScope.GLOBAL
+        && policy.getTargetClassName() == TargetClassName.RemotePlugin
+        && policy.getKey() != null
+        && policy.getKey().startsWith(MetadataPolicy.ZONE_METADATA_PREFIX);
+  }
+
+  /**
+   * Applies a zone policy that was created or updated by this replica.
+   *
+   * @param policy The saved zone policy.
+   */
+  void put(MonitorMetadataPolicy policy) {
+    final List<String> zones = MetadataValues.parseList(policy.getValue());
+    synchronized (this) {
+      final Map<String, List<String>> updated = new HashMap<>(snapshot.getZonesByRegion());
+      updated.put(regionOf(policy), zones);
+      apply(generation.incrementAndGet(), new Snapshot(updated));
+    }
+  }
+
+  /**
+   * Applies the removal of a zone policy by this replica.
+   *
+   * @param policy The removed zone policy.
+   */
+  void remove(MonitorMetadataPolicy policy) {
+    synchronized (this) {
+      final Map<String, List<String>> updated = new HashMap<>(snapshot.getZonesByRegion());
+      updated.remove(regionOf(policy));
+      apply(generation.incrementAndGet(), new Snapshot(updated));
+    }
+  }
+
+  /**
+   * Indicates a zone policy may have been changed by another replica.
+   */
+  void markStale() {
+    stale.set(true);
+  }
+
+  @Scheduled(fixedDelayString = "#{@zonePolicyProperties.reloadDelay.toMillis()}")
+  public void reloadIfStale() {
+    if (stale.getAndSet(false)) {
+      reload();
+    }
+  }
+
+  @Scheduled(fixedDelayString = "#{@zonePolicyProperties.refreshInterval.toMillis()}",
+      initialDelayString = "#{@zonePolicyProperties.refreshInterval.toMillis()}")
+  public void refresh() {
+    reload();
+  }
+
+  /**
+   * Replaces the table with the zone policies currently stored.
+   */
+  @PostConstruct
+  public void reload() {
+    final long loadedGeneration = generation.incrementAndGet();
+    final Map<String, List<String>> loaded = new HashMap<>();
+    for (MonitorMetadataPolicy policy : monitorMetadataPolicyLookupRepository
+        .findAllByScopeAndTargetClassNameAndKeyStartingWith(
+            PolicyScope.GLOBAL, TargetClassName.RemotePlugin, MetadataPolicy.ZONE_METADATA_PREFIX)) {
+      loaded.put(regionOf(policy), MetadataValues.parseList(policy.getValue()));
+    }
+    synchronized (this) {
+      if (!apply(loadedGeneration, new Snapshot(loaded))) {
+        // the content read may still hold changes from other replicas, so read it again
+        log.debug("Discarding zone table loaded before a more recent change");
+        stale.set(true);
+        return;
+      }
+    }
+    log.debug("Loaded default monitoring zones for {} regions", loaded.size());
+  }
+
+  /**
+   * Replaces the table unless a change numbered after the given one has already been applied.
+   * Must be called while holding the lock of this table.
+   *
+   * @return true if the table was replaced.
+   */
+  private boolean apply(long changeGeneration, Snapshot updated) {
+    if (changeGeneration <= appliedGeneration) {
+      return false;
+    }
+    appliedGeneration = changeGeneration;
+    snapshot = updated;
+    return true;
+  }
+
+  private static String regionOf(MetadataPolicy policy) {
+    return policy.getKey().substring(MetadataPolicy.ZONE_METADATA_PREFIX.length());
+  }
+
+  /**
+   * An immutable copy of the table.
+   * The version is derived from the content alone, so every replica holding the same zones
+   * reports the same version.
+   */
+  @Getter
+  public static class Snapshot {
+    private final Map<String, List<String>> zonesByRegion;
+    private final String version;
+
+    Snapshot(Map<String, List<String>> zonesByRegion) {
+      this.zonesByRegion = Collections.unmodifiableMap(new TreeMap<>(zonesByRegion));
+      this.version = DigestUtils.md5DigestAsHex(
+          this.zonesByRegion.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
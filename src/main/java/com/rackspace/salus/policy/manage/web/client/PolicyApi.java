@@ -18,6 +18,7 @@ package com.rackspace.salus.policy.manage.web.client;
 
 import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyDTO;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyDTO;
+import com.rackspace.salus.policy.manage.web.model.ZonePoliciesDTO;
 import com.rackspace.salus.telemetry.model.MonitorType;
 import com.rackspace.salus.telemetry.model.TargetClassName;
 import java.util.List;
@@ -38,6 +39,7 @@ public interface PolicyApi {
   Map<String, MonitorMetadataPolicyDTO> getEffectiveMonitorMetadataMap(
       String tenantId, TargetClassName className, MonitorType monitorType);
   List<String> getDefaultMonitoringZones(String region, boolean useCache);
+  ZonePoliciesDTO getAllDefaultMonitoringZones(boolean useCache);
   void evictEffectiveMonitorMetadataMap(String tenantId, TargetClassName className,
       MonitorType monitorType);
 }
\ No newline at end of file
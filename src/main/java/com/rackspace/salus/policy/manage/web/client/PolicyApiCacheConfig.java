@@ -42,6 +42,7 @@ public class PolicyApiCacheConfig {
   public static final String CACHE_MONITOR_METADATA = "policymgmt_monitor_metadata_policies";
   public static final String CACHE_MONITOR_METADATA_MAP = "policymgmt_monitor_metadata_map";
   public static final String CACHE_ZONE_METADATA = "policymgmt_zone_metadata";
+  public static final String CACHE_ALL_ZONE_METADATA = "policymgmt_all_zone_metadata";
 
   private final PolicyApiCacheProperties properties;
 
@@ -59,6 +60,7 @@ public class PolicyApiCacheConfig {
       cacheManager.createCache(CACHE_MONITOR_METADATA, metadataCacheConfig());
       cacheManager.createCache(CACHE_MONITOR_METADATA_MAP, metadataCacheConfig());
       cacheManager.createCache(CACHE_ZONE_METADATA, metadataCacheConfig());
+      cacheManager.createCache(CACHE_ALL_ZONE_METADATA, metadataCacheConfig());
     };
   }
 
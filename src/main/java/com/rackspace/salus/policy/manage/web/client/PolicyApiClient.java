@@ -16,6 +16,7 @@
 
 package com.rackspace.salus.policy.manage.web.client;
 
+import static com.rackspace.salus.policy.manage.web.client.PolicyApiCacheConfig.CACHE_ALL_ZONE_METADATA;
 import static com.rackspace.salus.policy.manage.web.client.PolicyApiCacheConfig.CACHE_MONITOR_IDS;
 import static com.rackspace.salus.policy.manage.web.client.PolicyApiCacheConfig.CACHE_MONITOR_METADATA;
 import static com.rackspace.salus.policy.manage.web.client.PolicyApiCacheConfig.CACHE_MONITOR_METADATA_MAP;
@@ -25,6 +26,7 @@ import static com.rackspace.salus.policy.manage.web.client.PolicyApiCacheConfig.
 
 import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyDTO;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyDTO;
+import com.rackspace.salus.policy.manage.web.model.ZonePoliciesDTO;
 import com.rackspace.salus.telemetry.model.MonitorType;
 import com.rackspace.salus.telemetry.model.TargetClassName;
 import java.util.List;
@@ -34,7 +36,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -76,6 +82,9 @@ public class PolicyApiClient implements PolicyApi {
   private static final ParameterizedTypeReference<Map<String, MonitorMetadataPolicyDTO>> MAP_OF_MONITOR_POLICY = new ParameterizedTypeReference<>() {};
   private final RestTemplate restTemplate;
 
+  // the last zones retrieved, used to revalidate rather than re-fetch the unchanged zones
+  private volatile ZonePoliciesDTO lastZonePolicies;
+
   public PolicyApiClient(RestTemplate restTemplate) {
     this.restTemplate = restTemplate;
   }
@@ -191,4 +200,35 @@ public class PolicyApiClient implements PolicyApi {
         LIST_OF_STRING
     ).getBody();
   }
+
+  /**
+   * Gets the default monitoring zones of all regions as a single cached entry.
+   * When the entry needs to be refreshed, the previously retrieved zones are revalidated with
+   * their version and only re-fetched if they have changed.
+   */
+  @CacheEvict(cacheNames = CACHE_ALL_ZONE_METADATA, key = "'all'", condition = "!#useCache",
+      beforeInvocation = true)
+  @Cacheable(cacheNames = CACHE_ALL_ZONE_METADATA, key = "'all'", condition = "#useCache")
+  public ZonePoliciesDTO getAllDefaultMonitoringZones(boolean useCache) {
+    final ZonePoliciesDTO previous = lastZonePolicies;
+
+    final HttpHeaders headers = new HttpHeaders();
+    if (previous != null && previous.getVersion() != null) {
+      headers.setIfNoneMatch("\"" + previous.getVersion() + "\"");
+    }
+
+    final ResponseEntity<ZonePoliciesDTO> response = restTemplate.exchange(
+        "/api/admin/policy/metadata/zones",
+        HttpMethod.GET,
+        new HttpEntity<>(headers),
+        ZonePoliciesDTO.class
+    );
+
+    if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && previous != null) {
+      log.trace("Default monitoring zones are unchanged at version={}", previous.getVersion());
+      return previous;
+    }
+    lastZonePolicies = response.getBody();
+    return lastZonePolicies;
+  }
 }
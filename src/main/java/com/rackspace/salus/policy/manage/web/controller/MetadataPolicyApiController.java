@@ -16,12 +16,18 @@
 
 package com.rackspace.salus.policy.manage.web.controller;
 
+import com.rackspace.salus.policy.manage.services.EffectivePolicyDelta;
 import com.rackspace.salus.policy.manage.services.MonitorMetadataPolicyManagement;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
+import com.rackspace.salus.policy.manage.services.ZonePolicyTable;
+import com.rackspace.salus.policy.manage.web.model.EffectivePolicyDeltaDTO;
 import com.rackspace.salus.policy.manage.web.model.MetadataPolicyUpdate;
 import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyCreate;
 import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyDTO;
 import com.rackspace.salus.policy.manage.web.model.ZoneMetadataPolicyCreate;
 import com.rackspace.salus.policy.manage.web.model.ZoneMetadataPolicyUpdate;
+import com.rackspace.salus.policy.manage.web.model.ZonePoliciesDTO;
+import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
 import com.rackspace.salus.telemetry.model.MonitorType;
 import com.rackspace.salus.telemetry.model.NotFoundException;
 import com.rackspace.salus.telemetry.model.PagedContent;
@@ -39,6 +45,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -46,8 +53,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @Slf4j
 @RestController
@@ -55,11 +64,18 @@ import org.springframework.web.bind.annotation.RestController;
 public class MetadataPolicyApiController {
 
   private final MonitorMetadataPolicyManagement monitorMetadataPolicyManagement;
+  private final PolicyManagementMetrics.PhaseTimers effectivePolicyPhases;
+  private final PolicyManagementMetrics.PhaseTimers policyMapPhases;
 
   @Autowired
   public MetadataPolicyApiController(
-      MonitorMetadataPolicyManagement monitorMetadataPolicyManagement) {
+      MonitorMetadataPolicyManagement monitorMetadataPolicyManagement,
+      PolicyManagementMetrics policyManagementMetrics) {
     this.monitorMetadataPolicyManagement = monitorMetadataPolicyManagement;
+    this.effectivePolicyPhases = policyManagementMetrics.phaseTimers(
+        "getEffectiveMetadataPoliciesForTenant");
+    this.policyMapPhases = policyManagementMetrics.phaseTimers(
+        "getMetadataPoliciesForTenantAndType");
   }
 
   @GetMapping("/admin/policy/metadata/monitor/{uuid}")
@@ -75,8 +91,26 @@ public class MetadataPolicyApiController {
   @ApiOperation(value = "Gets effective Metadata policies by tenant id")
   @ApiResponses(value = { @ApiResponse(code = 200, message = "Policies Retrieved")})
   public List<MonitorMetadataPolicyDTO> getEffectivePoliciesByTenantId(@PathVariable String tenantId) {
-    return monitorMetadataPolicyManagement.getEffectiveMetadataPoliciesForTenant(tenantId)
-        .stream().map(MonitorMetadataPolicyDTO::new).collect(Collectors.toList());
+    List<MonitorMetadataPolicy> policies =
+        monitorMetadataPolicyManagement.getEffectiveMetadataPoliciesForTenant(tenantId);
+    long start = System.nanoTime();
+    List<MonitorMetadataPolicyDTO> dtos = policies.stream()
+        .map(this::toTypedDTO).collect(Collectors.toList());
+    effectivePolicyPhases.record(PolicyManagementMetrics.PHASE_DTO,
+        start, System.nanoTime(), policies.size(), dtos.size());
+    return dtos;
+  }
+
+  @GetMapping("/admin/policy/metadata/monitor/effective/{tenantId}/changes")
+  @ApiOperation(value = "Gets the changes to effective Metadata policies by tenant id since a previous version")
+  @ApiResponses(value = { @ApiResponse(code = 200, message = "Policy changes Retrieved")})
+  public EffectivePolicyDeltaDTO<MonitorMetadataPolicyDTO> getEffectivePolicyChangesByTenantId(
+      @PathVariable String tenantId, @RequestParam(required = false) String since) {
+    EffectivePolicyDelta<MonitorMetadataPolicy> delta =
+        monitorMetadataPolicyManagement.getEffectiveMetadataPolicyDelta(tenantId, since);
+    return new EffectivePolicyDeltaDTO<>(delta.getVersion(), delta.isFullResync(),
+        delta.getPolicies().stream().map(this::toTypedDTO).collect(Collectors.toList()),
+        delta.getRemovedPolicyIds());
   }
 
   @GetMapping("/admin/policy/metadata/monitor/effective/{tenantId}/{className}/{monitorType}")
@@ -84,13 +118,19 @@ public class MetadataPolicyApiController {
   @ApiResponses(value = { @ApiResponse(code = 200, message = "Policy values Retrieved")})
   public Map<String, MonitorMetadataPolicyDTO> getPolicyMap(
       @PathVariable String tenantId, @PathVariable TargetClassName className, @PathVariable MonitorType monitorType) {
-    return monitorMetadataPolicyManagement.getMetadataPoliciesForTenantAndType(tenantId, className, monitorType)
+    Map<String, MonitorMetadataPolicy> policies =
+        monitorMetadataPolicyManagement.getMetadataPoliciesForTenantAndType(tenantId, className, monitorType);
+    long start = System.nanoTime();
+    Map<String, MonitorMetadataPolicyDTO> dtos = policies
         .entrySet()
         .stream()
         .collect(Collectors.toMap(
             Entry::getKey,
-            entry -> new MonitorMetadataPolicyDTO(entry.getValue())
+            entry -> toTypedDTO(entry.getValue())
         ));
+    policyMapPhases.record(PolicyManagementMetrics.PHASE_DTO,
+        start, System.nanoTime(), policies.size(), dtos.size());
+    return dtos;
   }
 
   @GetMapping("/admin/policy/metadata/monitor")
@@ -108,6 +148,21 @@ public class MetadataPolicyApiController {
     return monitorMetadataPolicyManagement.getDefaultMonitoringZones(region);
   }
 
+  @GetMapping("/admin/policy/metadata/zones")
+  @ApiOperation(value = "Gets default monitoring zones for all regions")
+  @ApiResponses(value = {
+      @ApiResponse(code = 200, message = "Zones Retrieved"),
+      @ApiResponse(code = 304, message = "Zones have not changed since the given version")})
+  public ResponseEntity<ZonePoliciesDTO> getAllDefaultMonitoringZones(WebRequest request) {
+    final ZonePolicyTable.Snapshot zones = monitorMetadataPolicyManagement.getAllDefaultMonitoringZones();
+    if (request.checkNotModified(zones.getVersion())) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(zones.getVersion()).build();
+    }
+    return ResponseEntity.ok()
+        .eTag(zones.getVersion())
+        .body(new ZonePoliciesDTO(zones.getVersion(), zones.getZonesByRegion()));
+  }
+
   @PostMapping("/admin/policy/metadata/monitor")
   @ResponseStatus(HttpStatus.CREATED)
   @ApiOperation(value = "Creates new monitor metadata Policy")
@@ -159,4 +214,8 @@ public class MetadataPolicyApiController {
   public void delete(@PathVariable String region) {
     monitorMetadataPolicyManagement.removeZonePolicy(region);
   }
+
+  private MonitorMetadataPolicyDTO toTypedDTO(MonitorMetadataPolicy policy) {
+    return new MonitorMetadataPolicyDTO(policy, monitorMetadataPolicyManagement.getTypedValue(policy));
+  }
 }
@@ -16,10 +16,14 @@
 
 package com.rackspace.salus.policy.manage.web.controller;
 
+import com.rackspace.salus.policy.manage.services.EffectivePolicyDelta;
 import com.rackspace.salus.policy.manage.services.MonitorPolicyManagement;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
+import com.rackspace.salus.policy.manage.web.model.EffectivePolicyDeltaDTO;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyCreate;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyDTO;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyUpdate;
+import com.rackspace.salus.telemetry.entities.MonitorPolicy;
 import com.rackspace.salus.telemetry.model.NotFoundException;
 import com.rackspace.salus.telemetry.model.PagedContent;
 import io.swagger.annotations.ApiOperation;
@@ -50,11 +54,15 @@ import org.springframework.web.bind.annotation.RestController;
 public class MonitorPolicyApiController {
 
   private MonitorPolicyManagement monitorPolicyManagement;
+  private final PolicyManagementMetrics.PhaseTimers effectivePolicyPhases;
 
   @Autowired
   public MonitorPolicyApiController(
-      MonitorPolicyManagement monitorPolicyManagement) {
+      MonitorPolicyManagement monitorPolicyManagement,
+      PolicyManagementMetrics policyManagementMetrics) {
     this.monitorPolicyManagement = monitorPolicyManagement;
+    this.effectivePolicyPhases = policyManagementMetrics.phaseTimers(
+        "getEffectiveMonitorPoliciesForTenant");
   }
 
   @GetMapping("/admin/policy/monitors/{uuid}")
@@ -70,8 +78,25 @@ public class MonitorPolicyApiController {
   @ApiOperation(value = "Gets effective monitor policies by tenant id")
   @ApiResponses(value = { @ApiResponse(code = 200, message = "Policies Retrieved")})
   public List<MonitorPolicyDTO> getEffectivePoliciesByTenantId(@PathVariable String tenantId) {
-    return monitorPolicyManagement.getEffectiveMonitorPoliciesForTenant(tenantId)
-        .stream().map(MonitorPolicyDTO::new).collect(Collectors.toList());
+    List<MonitorPolicy> policies = monitorPolicyManagement.getEffectiveMonitorPoliciesForTenant(tenantId);
+    long start = System.nanoTime();
+    List<MonitorPolicyDTO> dtos = policies.stream()
+        .map(MonitorPolicyDTO::new).collect(Collectors.toList());
+    effectivePolicyPhases.record(PolicyManagementMetrics.PHASE_DTO,
+        start, System.nanoTime(), policies.size(), dtos.size());
+    return dtos;
+  }
+
+  @GetMapping("/admin/policy/monitors/effective/{tenantId}/changes")
+  @ApiOperation(value = "Gets the changes to effective monitor policies by tenant id since a previous version")
+  @ApiResponses(value = { @ApiResponse(code = 200, message = "Policy changes Retrieved")})
+  public EffectivePolicyDeltaDTO<MonitorPolicyDTO> getEffectivePolicyChangesByTenantId(
+      @PathVariable String tenantId, @RequestParam(required = false) String since) {
+    EffectivePolicyDelta<MonitorPolicy> delta =
+        monitorPolicyManagement.getEffectiveMonitorPolicyDelta(tenantId, since);
+    return new EffectivePolicyDeltaDTO<>(delta.getVersion(), delta.isFullResync(),
+        delta.getPolicies().stream().map(MonitorPolicyDTO::new).collect(Collectors.toList()),
+        delta.getRemovedPolicyIds());
   }
 
   @GetMapping("/admin/policy/monitors/effective/{tenantId}/monitor-ids")
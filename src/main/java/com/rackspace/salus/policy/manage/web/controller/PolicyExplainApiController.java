@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.controller;
+
+import com.rackspace.salus.policy.manage.services.PolicyResolutionExplainer;
+import com.rackspace.salus.policy.manage.web.model.PolicyResolutionExplanationDTO;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@RequestMapping("/api")
+public class PolicyExplainApiController {
+
+  private final PolicyResolutionExplainer policyResolutionExplainer;
+
+  @Autowired
+  public PolicyExplainApiController(PolicyResolutionExplainer policyResolutionExplainer) {
+    this.policyResolutionExplainer = policyResolutionExplainer;
+  }
+
+  @GetMapping("/admin/policy/explain/{tenantId}")
+  @ApiOperation(value = "Explains how the effective policies of a tenant are resolved")
+  @ApiResponses(value = { @ApiResponse(code = 200, message = "Explanation Retrieved")})
+  public PolicyResolutionExplanationDTO explain(@PathVariable String tenantId) {
+    return policyResolutionExplainer.explain(tenantId);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.controller;
+
+import com.rackspace.salus.policy.manage.services.PolicyChangeStreams;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Slf4j
+@RestController
+@RequestMapping("/api")
+public class PolicyStreamApiController {
+
+  private final PolicyChangeStreams policyChangeStreams;
+
+  @Autowired
+  public PolicyStreamApiController(PolicyChangeStreams policyChangeStreams) {
+    this.policyChangeStreams = policyChangeStreams;
+  }
+
+  @GetMapping(value = "/admin/policy/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @ApiOperation(value = "Streams the policy events of the given tenants as server-sent events")
+  @ApiResponses(value = { @ApiResponse(code = 200, message = "Stream opened")})
+  public SseEmitter streamPolicyChanges(@RequestParam List<String> tenantIds) {
+    return policyChangeStreams.subscribe(tenantIds);
+  }
+}
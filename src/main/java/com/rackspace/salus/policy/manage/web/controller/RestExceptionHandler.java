@@ -16,12 +16,9 @@
 
 package com.rackspace.salus.policy.manage.web.controller;
 
-import com.rackspace.salus.common.config.MetricNames;
-import com.rackspace.salus.common.config.MetricTags;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
 import com.rackspace.salus.telemetry.errors.AlreadyExistsException;
 import com.rackspace.salus.telemetry.model.NotFoundException;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
 import javax.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.servlet.error.ErrorAttributes;
@@ -37,31 +34,28 @@ import org.springframework.web.servlet.HandlerMapping;
 public class RestExceptionHandler extends
     com.rackspace.salus.common.web.AbstractRestExceptionHandler {
 
-  MeterRegistry meterRegistry;
-  private final Counter.Builder policyManagementErrorCounter;
+  private final PolicyManagementMetrics policyManagementMetrics;
 
   @Autowired
-  public RestExceptionHandler(ErrorAttributes errorAttributes, MeterRegistry meterRegistry) {
+  public RestExceptionHandler(ErrorAttributes errorAttributes,
+      PolicyManagementMetrics policyManagementMetrics) {
     super(errorAttributes);
-    this.meterRegistry = meterRegistry;
-    policyManagementErrorCounter = Counter.builder(MetricNames.SERVICE_OPERATION_FAILED);
+    this.policyManagementMetrics = policyManagementMetrics;
   }
 
   @ExceptionHandler({NotFoundException.class})
   public ResponseEntity<?> handleNotFound(
       HttpServletRequest request, Exception e) {
-    policyManagementErrorCounter
-        .tags(MetricTags.URI_METRIC_TAG,request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE).toString(),MetricTags.EXCEPTION_METRIC_TAG,e.getClass().getSimpleName())
-        .register(meterRegistry).increment();
+    policyManagementMetrics.failed(
+        request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE).toString(), e.getClass());
     return respondWith(request, HttpStatus.NOT_FOUND);
   }
 
   @ExceptionHandler({AlreadyExistsException.class})
   public ResponseEntity<?> handleAlreadyExists(
       HttpServletRequest request, Exception e) {
-    policyManagementErrorCounter
-        .tags(MetricTags.URI_METRIC_TAG,request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE).toString(),MetricTags.EXCEPTION_METRIC_TAG,e.getClass().getSimpleName())
-        .register(meterRegistry).increment();
+    policyManagementMetrics.failed(
+        request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE).toString(), e.getClass());
     return respondWith(request, HttpStatus.UNPROCESSABLE_ENTITY);
   }
 
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.model;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class EffectivePolicyDeltaDTO<T extends PolicyDTO> {
+  /**
+   * Identifies the point in the policy change log reached by this response
+   * and should be passed as the <code>since</code> parameter of the next request.
+   */
+  String version;
+  /**
+   * When true, the policies are the tenant's complete effective set and replace all
+   * previously retrieved policies.
+   */
+  boolean fullResync;
+  List<T> policies;
+  Set<UUID> removedPolicyIds;
+
+  public EffectivePolicyDeltaDTO(String version, boolean fullResync, List<T> policies,
+      Set<UUID> removedPolicyIds) {
+    this.version = version;
+    this.fullResync = fullResync;
+    this.policies = policies;
+    this.removedPolicyIds = removedPolicyIds;
+  }
+}
@@ -16,12 +16,16 @@
 
 package com.rackspace.salus.policy.manage.web.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.rackspace.salus.telemetry.entities.MetadataPolicy;
 import com.rackspace.salus.telemetry.model.MetadataValueType;
 import com.rackspace.salus.telemetry.model.TargetClassName;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -32,11 +36,34 @@ public class MetadataPolicyDTO extends PolicyDTO {
   String key;
   String value;
 
+  /**
+   * The value converted to the form described by {@link MetadataValues}.
+   * It is derived from the value and its type, so it is not read from requests, and is only
+   * parsed on first use when it was not provided up front.
+   */
+  @JsonProperty(access = Access.READ_ONLY)
+  @JsonSerialize(using = MetadataValues.TypedValueSerializer.class)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  Object typedValue;
+
   public MetadataPolicyDTO(MetadataPolicy policy) {
+    this(policy, null);
+  }
+
+  public MetadataPolicyDTO(MetadataPolicy policy, Object typedValue) {
     super(policy);
     this.targetClassName = policy.getTargetClassName();
     this.valueType = policy.getValueType();
     this.key = policy.getKey();
     this.value = policy.getValue();
+    this.typedValue = typedValue;
+  }
+
+  public Object getTypedValue() {
+    if (typedValue == null) {
+      typedValue = MetadataValues.parseOrNull(valueType, value);
+    }
+    return typedValue;
   }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.rackspace.salus.telemetry.model.MetadataValueType;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.BooleanUtils;
+
+/**
+ * Converts the string values stored in metadata policies into their typed form.
+ *
+ * <p>
+ *   The typed values are immutable:
+ * </p>
+ * <ul>
+ *   <li>{@link MetadataValueType#STRING} is returned as a {@link String}</li>
+ *   <li>{@link MetadataValueType#STRING_LIST} is returned as a {@link List} of {@link String}</li>
+ *   <li>{@link MetadataValueType#INT} is returned as an {@link Integer}</li>
+ *   <li>{@link MetadataValueType#DURATION} is returned as a {@link Duration}</li>
+ *   <li>{@link MetadataValueType#BOOL} is returned as a {@link Boolean}</li>
+ * </ul>
+ */
+public final class MetadataValues {
+
+  private static final Pattern LIST_SEPARATOR = Pattern.compile("\\s*,\\s*");
+
+  private MetadataValues() {
+  }
+
+  /**
+   * Parses a metadata value into its typed form.
+   *
+   * @param valueType The type the value is stored as.
+   * @param value The string form of the value.
+   * @return The typed value.
+   * @throws IllegalArgumentException if the value cannot be parsed as the given type.
+   */
+  public static Object parse(MetadataValueType valueType, String value)
+      throws IllegalArgumentException {
+    if (valueType == null || value == null) {
+      throw new IllegalArgumentException("Unable to parse a value without a type");
+    }
+    try {
+      switch (valueType) {
+        case STRING:
+          return value;
+        case STRING_LIST:
+          return parseList(value);
+        case INT:
+          return Integer.parseInt(value);
+        case DURATION:
+          return Duration.parse(value);
+        case BOOL:
+          return BooleanUtils.toBoolean(value.toLowerCase(), "true", "false");
+        default:
+          throw new IllegalArgumentException(String.format("Unable to parse %s as unknown type", value));
+      }
+    } catch (IllegalArgumentException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException(
+          String.format("Unable to parse %s as %s", value, valueType), e);
+    }
+  }
+
+  /**
+   * Parses a metadata value into its typed form, for values that have already been validated.
+   *
+   * @param valueType The type the value is stored as.
+   * @param value The string form of the value.
+   * @return The typed value, or null if it cannot be parsed as the given type.
+   */
+  public static Object parseOrNull(MetadataValueType valueType, String value) {
+    try {
+      return parse(valueType, value);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Splits a comma separated list value, ignoring any whitespace around the separators.
+   *
+   * @param value The string form of the list.
+   * @return The immutable list of values.
+   */
+  public static List<String> parseList(String value) {
+    return List.of(LIST_SEPARATOR.split(value));
+  }
+
+  /**
+   * Writes typed values to JSON, using the same ISO-8601 form for durations as the stored value
+   * regardless of how the object mapper is configured for java.time types.
+   */
+  public static class TypedValueSerializer extends JsonSerializer<Object> {
+
+    @Override
+    public void serialize(Object value, JsonGenerator gen, SerializerProvider serializers)
+        throws IOException {
+      if (value instanceof Duration) {
+        gen.writeString(value.toString());
+      } else {
+        serializers.defaultSerializeValue(value, gen);
+      }
+    }
+  }
+}
@@ -29,7 +29,11 @@ public class MonitorMetadataPolicyDTO extends MetadataPolicyDTO {
   MonitorType monitorType;
 
   public MonitorMetadataPolicyDTO(MonitorMetadataPolicy policy) {
-    super(policy);
+    this(policy, null);
+  }
+
+  public MonitorMetadataPolicyDTO(MonitorMetadataPolicy policy, Object typedValue) {
+    super(policy, typedValue);
     this.monitorType = policy.getMonitorType();
   }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.model;
+
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import java.util.List;
+import java.util.UUID;
+import lombok.Data;
+
+/**
+ * Explains how the effective policies of a tenant were resolved.
+ */
+@Data
+public class PolicyResolutionExplanationDTO {
+  String tenantId;
+  String accountType;
+  List<Step> steps;
+  List<Candidate> monitorPolicies;
+  List<Candidate> metadataPolicies;
+
+  @Data
+  public static class Step {
+    String name;
+    long durationMicros;
+    /**
+     * The number of SQL statements executed during the step by the thread resolving the tenant.
+     */
+    int statementCount;
+  }
+
+  @Data
+  public static class Candidate {
+    /**
+     * The name, or monitor type and key, that the policy competes within.
+     */
+    String key;
+    UUID policyId;
+    PolicyScope scope;
+    String subscope;
+    /**
+     * True if this policy won its key, otherwise it is overridden by a higher priority scope.
+     */
+    boolean effective;
+  }
+}
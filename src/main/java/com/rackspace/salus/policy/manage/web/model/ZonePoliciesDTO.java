@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.model;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ZonePoliciesDTO {
+  /**
+   * Identifies the content of the zones, and is also returned as the ETag of the response.
+   */
+  String version;
+  Map<String, List<String>> zonesByRegion;
+
+  public ZonePoliciesDTO(String version, Map<String, List<String>> zonesByRegion) {
+    this.version = version;
+    this.zonesByRegion = zonesByRegion;
+  }
+}
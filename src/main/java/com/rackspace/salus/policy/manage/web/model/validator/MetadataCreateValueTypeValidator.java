@@ -18,32 +18,15 @@
 package com.rackspace.salus.policy.manage.web.model.validator;
 
 import com.rackspace.salus.policy.manage.web.model.MetadataPolicyCreate;
-import java.time.Duration;
-import org.apache.commons.lang3.BooleanUtils;
+import com.rackspace.salus.policy.manage.web.model.MetadataValues;
 
 public class MetadataCreateValueTypeValidator extends ValueTypeValidator<MetadataPolicyCreate> {
 
   @Override
   protected boolean validateValueType(MetadataPolicyCreate policy) {
     try {
-      switch (policy.getValueType()) {
-        case STRING:
-          break;
-        case STRING_LIST:
-          break;
-        case INT:
-          Integer.parseInt(policy.getValue());
-          break;
-        case DURATION:
-          Duration.parse(policy.getValue());
-          break;
-        case BOOL:
-          BooleanUtils.toBoolean(policy.getValue().toLowerCase(), "true", "false");
-          break;
-        default:
-          throw new IllegalArgumentException(String.format("Unable to parse %s as unknown type", policy.getValue()));
-      }
-    } catch(Exception e) {
+      MetadataValues.parse(policy.getValueType(), policy.getValue());
+    } catch(IllegalArgumentException e) {
       return false;
     }
     return true;
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.config;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import com.rackspace.salus.policy.manage.repositories.TenantMetadataLookupRepository;
+import com.rackspace.salus.telemetry.entities.Policy;
+import com.rackspace.salus.telemetry.entities.TenantMetadata;
+import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
+import com.rackspace.salus.test.EnableTestContainersDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.jemos.podam.api.PodamFactory;
+import uk.co.jemos.podam.api.PodamFactoryImpl;
+
+/**
+ * Verifies the second-level and query caches are enabled when a JCache manager is present.
+ * Each lookup runs in its own transaction, as it would in a request, since cached query
+ * results are only shared once the transaction that wrote the table has committed.
+ */
+@RunWith(SpringRunner.class)
+@EnableTestContainersDatabase
+@DataJpaTest(showSql = false)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+@Import({HibernateCacheConfig.class, HibernateCacheMetrics.class, PolicyCacheProperties.class,
+    DatabaseConfig.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {
+    "spring.cache.type=jcache",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class HibernateCacheConfigTest {
+
+  private PodamFactory podamFactory = new PodamFactoryImpl();
+
+  @Autowired
+  TenantMetadataRepository tenantMetadataRepository;
+
+  @Autowired
+  TenantMetadataLookupRepository tenantMetadataLookupRepository;
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  CacheManager cacheManager;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  private Statistics statistics;
+
+  @Before
+  public void setup() {
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @After
+  public void tearDown() {
+    tenantMetadataRepository.deleteAll();
+  }
+
+  @Test
+  public void testRegionsCreated() {
+    assertThat(cacheManager.getCache(Policy.class.getName()), notNullValue());
+    assertThat(cacheManager.getCache(TenantMetadata.class.getName()), notNullValue());
+    assertThat(cacheManager.getCache(HibernateCacheConfig.REGION_POLICY_QUERIES), notNullValue());
+    assertThat(cacheManager.getCache(HibernateCacheConfig.REGION_TENANT_METADATA_QUERIES), notNullValue());
+  }
+
+  @Test
+  public void testRepeatedLookupHitsCache() {
+    final TenantMetadata metadata = tenantMetadataRepository.save(
+        podamFactory.manufacturePojo(TenantMetadata.class));
+
+    tenantMetadataLookupRepository.findByTenantId(metadata.getTenantId());
+    final long statementsAfterFirst = statistics.getPrepareStatementCount();
+    assertThat(tenantMetadataLookupRepository.findByTenantId(metadata.getTenantId()).get().getId(),
+        equalTo(metadata.getId()));
+
+    // the repeated lookup is answered by the query cache and second-level cache alone
+    assertThat(statistics.getPrepareStatementCount(), equalTo(statementsAfterFirst));
+    assertThat(statistics.getQueryCacheHitCount(), greaterThan(0L));
+    assertThat(statistics.getSecondLevelCacheHitCount(), greaterThan(0L));
+
+    assertThat(meterRegistry.get(HibernateCacheMetrics.METRIC_CACHE_HIT_RATIO)
+        .tag("cache", "query")
+        .gauge().value(), greaterThan(0.0));
+    assertThat(meterRegistry.get(HibernateCacheMetrics.METRIC_CACHE_HIT_RATIO)
+        .tag("cache", "second-level")
+        .gauge().value(), greaterThan(0.0));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.perf;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A simple closed-loop load generator for the effective policy endpoints.
+ *
+ * <p>
+ *   It is not run as part of the build. To compare the request handling modes, start the
+ *   service once with the defaults and once with <code>salus.policy.virtual-threads.enabled=true</code>
+ *   and run this harness against each with the same arguments:
+ * </p>
+ * <pre>
+ *   java -cp target/test-classes \
+ *     com.rackspace.salus.policy.manage.perf.EffectivePolicyLoadHarness \
+ *     http://localhost:8091 200 60 tenant-1,tenant-2,tenant-3
+ * </pre>
+ * <p>
+ *   The arguments are the base url, the number of concurrent clients, the duration in
+ *   seconds and a comma separated list of tenants to request. The throughput and latency
+ *   percentiles of all requests are printed once the run completes.
+ * </p>
+ */
+public class EffectivePolicyLoadHarness {
+
+  private static final List<String> PATHS = List.of(
+      "/api/admin/policy/monitors/effective/%s",
+      "/api/admin/policy/monitors/effective/%s/policy-ids",
+      "/api/admin/policy/monitors/effective/%s/monitor-ids",
+      "/api/admin/policy/metadata/monitor/effective/%s"
+  );
+
+  public static void main(String[] args) throws InterruptedException {
+    if (args.length < 4) {
+      System.err.println("Usage: EffectivePolicyLoadHarness <baseUrl> <clients> <seconds> <tenantIds>");
+      System.exit(1);
+    }
+    final String baseUrl = args[0];
+    final int clients = Integer.parseInt(args[1]);
+    final Duration duration = Duration.ofSeconds(Long.parseLong(args[2]));
+    final List<String> tenantIds = Arrays.asList(args[3].split(","));
+
+    final HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    final AtomicLong errors = new AtomicLong();
+    final long deadline = System.nanoTime() + duration.toNanos();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(clients);
+    for (int i = 0; i < clients; i++) {
+      executor.execute(() -> {
+        while (System.nanoTime() < deadline) {
+          final ThreadLocalRandom random = ThreadLocalRandom.current();
+          final String tenantId = tenantIds.get(random.nextInt(tenantIds.size()));
+          final String path = String.format(PATHS.get(random.nextInt(PATHS.size())), tenantId);
+          final HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+              .timeout(Duration.ofSeconds(30))
+              .GET()
+              .build();
+
+          final long start = System.nanoTime();
+          try {
+            final HttpResponse<Void> response = httpClient.send(request, BodyHandlers.discarding());
+            if (response.statusCode() >= 400) {
+              errors.incrementAndGet();
+            }
+          } catch (Exception e) {
+            errors.incrementAndGet();
+          }
+          latencies.add(System.nanoTime() - start);
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+
+    report(latencies, errors.get(), duration);
+  }
+
+  private static void report(List<Long> latencies, long errors, Duration duration) {
+    final long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+    if (sorted.length == 0) {
+      System.out.println("No requests completed");
+      return;
+    }
+    System.out.printf("requests=%d errors=%d throughput=%.1f/s%n",
+        sorted.length, errors, sorted.length / (double) duration.toSeconds());
+    System.out.printf("p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms%n",
+        percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+        sorted[sorted.length - 1] / 1_000_000.0);
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    final int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+    return sorted[Math.max(index, 0)] / 1_000_000.0;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import com.rackspace.salus.telemetry.entities.MonitorPolicy;
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class CompiledPoliciesTest {
+
+  private final MonitorPolicy globalA = policy("a", PolicyScope.GLOBAL, null);
+  private final MonitorPolicy globalB = policy("b", PolicyScope.GLOBAL, null);
+  private final MonitorPolicy globalC = policy("c", PolicyScope.GLOBAL, null);
+  private final MonitorPolicy accountA = policy("a", PolicyScope.ACCOUNT_TYPE, "managed");
+  private final MonitorPolicy accountB = policy("b", PolicyScope.ACCOUNT_TYPE, "managed");
+  private final MonitorPolicy otherAccountC = policy("c", PolicyScope.ACCOUNT_TYPE, "core");
+  private final MonitorPolicy tenantB = policy("b", PolicyScope.TENANT, "t-1");
+  private final MonitorPolicy tenantD = policy("d", PolicyScope.TENANT, "t-1");
+  private final MonitorPolicy tenantOptOutA = (MonitorPolicy) policy("a", PolicyScope.TENANT, "t-3")
+      .setMonitorTemplateId(null);
+
+  private final CompiledPolicies<String, MonitorPolicy> compiled = CompiledPolicies.compile(
+      List.of(globalA, globalB, globalC, accountA, accountB, otherAccountC, tenantB, tenantD,
+          tenantOptOutA),
+      MonitorPolicy::getName, MonitorPolicy::getMonitorTemplateId);
+
+  @Test
+  public void testResolve_tenantOverridesAccountTypeAndGlobal() {
+    CompiledPolicies.Resolution<MonitorPolicy> resolution = compiled.resolve("t-1", "managed");
+    List<MonitorPolicy> resolved = resolution.getPolicies();
+
+    assertThat(resolved, hasSize(4));
+    assertThat(resolved, containsInAnyOrder(accountA, tenantB, globalC, tenantD));
+    assertThat(resolution.getCandidates(), equalTo(compiled.countCandidates("t-1", "managed")));
+  }
+
+  @Test
+  public void testResolve_accountTypeOnly() {
+    List<MonitorPolicy> resolved = compiled.resolve("t-2", "core").getPolicies();
+
+    assertThat(resolved, containsInAnyOrder(globalA, globalB, otherAccountC));
+  }
+
+  @Test
+  public void testResolve_noAccountType() {
+    List<MonitorPolicy> resolved = compiled.resolve("t-2", null).getPolicies();
+
+    assertThat(resolved, containsInAnyOrder(globalA, globalB, globalC));
+  }
+
+  @Test
+  public void testResolvePolicyIds() {
+    assertThat(compiled.resolvePolicyIds("t-1", "managed", true),
+        containsInAnyOrder(accountA.getId(), tenantB.getId(), globalC.getId(), tenantD.getId()));
+
+    assertThat(compiled.resolvePolicyIds("t-3", null, true),
+        containsInAnyOrder(tenantOptOutA.getId(), globalB.getId(), globalC.getId()));
+    assertThat(compiled.resolvePolicyIds("t-3", null, false),
+        containsInAnyOrder(globalB.getId(), globalC.getId()));
+  }
+
+  @Test
+  public void testResolveMonitorIds() {
+    assertThat(compiled.resolveMonitorIds("t-3", "core"),
+        containsInAnyOrder(globalB.getMonitorTemplateId(), otherAccountC.getMonitorTemplateId()));
+  }
+
+  /**
+   * Resolving ids should allocate little more than the result list once the JIT has warmed up.
+   * The least allocation of several rounds is checked against a generous bound, so a round
+   * measured while the JIT is still compiling does not fail the test, while a regression
+   * that materializes the policies or a stream per call still does.
+   */
+  @Test
+  public void testResolvePolicyIds_allocation() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadMXBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported()
+        && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+    final int iterations = 20_000;
+    final long threadId = Thread.currentThread().getId();
+    long resolved = 0;
+    long perCall = Long.MAX_VALUE;
+    for (int round = 0; round < 10; round++) {
+      final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < iterations; i++) {
+        resolved += compiled.resolvePolicyIds("t-1", "managed", true).size();
+      }
+      perCall = Math.min(perCall,
+          (threadMXBean.getThreadAllocatedBytes(threadId) - before) / iterations);
+    }
+
+    assertThat(resolved, equalTo(40L * iterations));
+    // an ArrayList of four elements is about 80 bytes
+    assertThat(perCall, lessThanOrEqualTo(1024L));
+  }
+
+  @Test
+  public void testExplain() {
+    List<CompiledPolicies.Candidate<String, MonitorPolicy>> candidates =
+        compiled.explain("t-1", "managed");
+
+    assertThat(candidates.stream().map(CompiledPolicies.Candidate::getPolicy)
+            .collect(Collectors.toList()),
+        contains(tenantB, tenantD, accountA, accountB, globalA, globalB, globalC));
+    assertThat(candidates.stream().filter(CompiledPolicies.Candidate::isEffective)
+            .map(CompiledPolicies.Candidate::getPolicy).collect(Collectors.toList()),
+        containsInAnyOrder(compiled.resolve("t-1", "managed").getPolicies().toArray()));
+    assertThat(compiled.countCandidates("t-1", "managed"), equalTo(candidates.size()));
+  }
+
+  @Test
+  public void testValueOf() {
+    List<MonitorPolicy> parsed = new ArrayList<>();
+    CompiledPolicies<String, MonitorPolicy> withValues = CompiledPolicies.compile(
+        List.of(globalA, accountA, tenantB),
+        MonitorPolicy::getName, MonitorPolicy::getMonitorTemplateId,
+        policy -> {
+          parsed.add(policy);
+          return policy.getName().toUpperCase();
+        });
+
+    // each winner is parsed once as it is compiled
+    assertThat(parsed, containsInAnyOrder(globalA, accountA, tenantB));
+    assertThat(withValues.valueOf(accountA, policy -> "fallback"), equalTo("A"));
+    assertThat(withValues.valueOf(tenantB, policy -> "fallback"), equalTo("B"));
+
+    // a policy loaded separately, even with the same id, is not one that was compiled
+    MonitorPolicy reloadedA = (MonitorPolicy) policy("a", PolicyScope.ACCOUNT_TYPE, "managed")
+        .setId(accountA.getId());
+    assertThat(withValues.valueOf(reloadedA, policy -> "fallback"), equalTo("fallback"));
+    assertThat(parsed, hasSize(3));
+  }
+
+  @Test
+  public void testResolve_empty() {
+    assertThat(CompiledPolicies.<String, MonitorPolicy>empty().resolve("t-1", "managed")
+        .getPolicies(), hasSize(0));
+  }
+
+  private static MonitorPolicy policy(String name, PolicyScope scope, String subscope) {
+    return (MonitorPolicy) new MonitorPolicy()
+        .setMonitorTemplateId(UUID.randomUUID())
+        .setName(name)
+        .setScope(scope)
+        .setSubscope(subscope)
+        .setId(UUID.randomUUID());
+  }
+}
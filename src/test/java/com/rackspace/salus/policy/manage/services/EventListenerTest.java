@@ -0,0 +1,374 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static com.rackspace.salus.policy.manage.config.HibernateCacheConfig.REGION_POLICY_QUERIES;
+import static com.rackspace.salus.policy.manage.config.HibernateCacheConfig.REGION_TENANT_METADATA_QUERIES;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.rackspace.salus.common.messaging.KafkaTopicProperties;
+import com.rackspace.salus.policy.manage.config.PolicyChangeLogProperties;
+import com.rackspace.salus.telemetry.entities.Policy;
+import com.rackspace.salus.telemetry.entities.TenantMetadata;
+import com.rackspace.salus.telemetry.messaging.MetadataPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.MonitorPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.TenantPolicyChangeEvent;
+import com.rackspace.salus.telemetry.model.TargetClassName;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+
+public class EventListenerTest {
+
+  private static final String TOPIC = "telemetry.policies.json";
+  private static final String ORIGIN = "this-replica";
+  private static final String OTHER_ORIGIN = "other-replica";
+
+  private PolicyEventHandlers handlers;
+  private ZonePolicyTable zonePolicyTable;
+  private PolicyResolutionEngine policyResolutionEngine;
+  private PolicyChangeLog policyChangeLog;
+  private PolicyChangeStreams policyChangeStreams;
+  private PolicyEventProducer policyEventProducer;
+  private Cache entityCache;
+  private org.hibernate.Cache sessionFactoryCache;
+  private Consumer<?, ?> consumer;
+  private SimpleMeterRegistry meterRegistry;
+  private EventListener eventListener;
+
+  @Before
+  public void setup() {
+    handlers = new PolicyEventHandlers();
+    zonePolicyTable = mock(ZonePolicyTable.class);
+    policyResolutionEngine = mock(PolicyResolutionEngine.class);
+    policyChangeLog = new PolicyChangeLog(new PolicyChangeLogProperties());
+    policyChangeStreams = mock(PolicyChangeStreams.class);
+    policyEventProducer = mock(PolicyEventProducer.class);
+    when(policyEventProducer.getOrigin()).thenReturn(ORIGIN);
+
+    entityCache = mock(Cache.class);
+    sessionFactoryCache = mock(org.hibernate.Cache.class);
+    SessionFactory sessionFactory = mock(SessionFactory.class);
+    when(sessionFactory.getCache()).thenReturn(sessionFactoryCache);
+    EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+    when(entityManagerFactory.getCache()).thenReturn(entityCache);
+    when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+
+    consumer = mock(Consumer.class);
+    meterRegistry = new SimpleMeterRegistry();
+
+    eventListener = new EventListener(new KafkaTopicProperties(),
+        mock(MonitorPolicyManagement.class), zonePolicyTable, policyResolutionEngine,
+        policyChangeLog, policyChangeStreams, handlers, entityManagerFactory,
+        policyEventProducer, new PolicyManagementMetrics(meterRegistry));
+  }
+
+  @Test
+  public void testGroupId_uniquePerReplica() {
+    EventListener other = new EventListener(new KafkaTopicProperties(),
+        mock(MonitorPolicyManagement.class), zonePolicyTable, policyResolutionEngine,
+        policyChangeLog, policyChangeStreams, new PolicyEventHandlers(),
+        mock(EntityManagerFactory.class), policyEventProducer,
+        new PolicyManagementMetrics(new SimpleMeterRegistry()));
+
+    assertThat(other.getGroupId(), not(equalTo(eventListener.getGroupId())));
+  }
+
+  @Test
+  public void testConsumePolicyEvents_appliedOncePerBatch() {
+    final long now = System.currentTimeMillis();
+    final UUID monitorPolicyId = UUID.randomUUID();
+    final UUID zonePolicyId = UUID.randomUUID();
+    // a monitor policy fanned out to two tenants and a zone policy fanned out to two tenants
+    eventListener.consumePolicyEvents(List.of(
+        record(0, now - 5_000, monitorPolicyEvent(monitorPolicyId, "t-1"), "cpu"),
+        record(1, now - 4_000, monitorPolicyEvent(monitorPolicyId, "t-2"), "cpu"),
+        record(2, now - 3_000, metadataPolicyEvent(zonePolicyId, "t-1"), "zones"),
+        record(3, now - 2_000, metadataPolicyEvent(zonePolicyId, "t-2"), "zones"),
+        record(4, now - 1_000, new TenantPolicyChangeEvent().setTenantId("t-1"), null),
+        record(5, now, new TenantPolicyChangeEvent().setTenantId("t-2"), null)
+    ), consumer);
+
+    verify(policyResolutionEngine).markStale();
+    verify(zonePolicyTable).markStale();
+    verify(entityCache).evict(Policy.class, monitorPolicyId);
+    verify(entityCache).evict(Policy.class, zonePolicyId);
+    verify(sessionFactoryCache).evictQueryRegion(REGION_POLICY_QUERIES);
+    verify(entityCache).evict(TenantMetadata.class);
+    verify(sessionFactoryCache).evictQueryRegion(REGION_TENANT_METADATA_QUERIES);
+    verifyNoMoreInteractions(policyResolutionEngine, zonePolicyTable, entityCache, sessionFactoryCache);
+    verify(policyChangeStreams).publish(argThat(events -> events.size() == 6), eq(Map.of(0, 6L)));
+
+    assertThat(meterRegistry.get(PolicyManagementMetrics.METRIC_EVENT_BATCH_DURATION)
+        .timer().count(), equalTo(1L));
+    assertThat(meterRegistry.get(PolicyManagementMetrics.METRIC_EVENT_BATCH_SIZE)
+        .summary().totalAmount(), equalTo(6.0));
+    // measured from the oldest event of the batch
+    assertThat(meterRegistry.get(PolicyManagementMetrics.METRIC_CACHE_INVALIDATION)
+        .timer().max(TimeUnit.MILLISECONDS), greaterThanOrEqualTo(5_000.0));
+  }
+
+  @Test
+  public void testConsumePolicyEvents_monitorPoliciesOnly() {
+    final long now = System.currentTimeMillis();
+    final UUID monitorPolicyId = UUID.randomUUID();
+    final UUID metadataPolicyId = UUID.randomUUID();
+    eventListener.consumePolicyEvents(List.of(
+        record(0, now, monitorPolicyEvent(monitorPolicyId, "t-1"), "cpu")
+    ), consumer);
+    eventListener.consumePolicyEvents(List.of(
+        record(1, now, new MetadataPolicyEvent()
+            .setTargetClassName(TargetClassName.Monitor)
+            .setPolicyId(metadataPolicyId)
+            .setTenantId("t-1"), "cpu/count")
+    ), consumer);
+
+    verify(policyResolutionEngine, times(2)).markStale();
+    verify(entityCache).evict(Policy.class, monitorPolicyId);
+    verify(entityCache).evict(Policy.class, metadataPolicyId);
+    verify(sessionFactoryCache, times(2)).evictQueryRegion(REGION_POLICY_QUERIES);
+    verifyNoMoreInteractions(entityCache, sessionFactoryCache);
+    verifyZeroInteractions(zonePolicyTable);
+  }
+
+  @Test
+  public void testConsumePolicyEvents_ownEvents() {
+    final long now = System.currentTimeMillis();
+    eventListener.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 0L), null);
+    verify(policyResolutionEngine).markStale();
+    // the recompile following the assignment
+    policyChangeLog.compiled(PolicyChangeLog.PolicyType.MONITOR, policyChangeLog.positions());
+    policyChangeLog.compiled(PolicyChangeLog.PolicyType.METADATA, policyChangeLog.positions());
+
+    eventListener.consumePolicyEvents(List.of(
+        record(0, now, monitorPolicyEvent(UUID.randomUUID(), "t-1"), "cpu", ORIGIN),
+        record(1, now, metadataPolicyEvent(UUID.randomUUID(), "t-1"), "zones", ORIGIN),
+        record(2, now, new TenantPolicyChangeEvent().setTenantId("t-1"), null, ORIGIN)
+    ), consumer);
+
+    // the caches and compiled policies were updated when this replica wrote the changes
+    verifyZeroInteractions(zonePolicyTable, entityCache, sessionFactoryCache);
+    verifyNoMoreInteractions(policyResolutionEngine);
+    verify(policyChangeStreams).publish(argThat(events -> events.size() == 3), eq(Map.of(0, 3L)));
+    // so the change log reports them without waiting for a recompile
+    assertThat(policyChangeLog.getChangesSince(PolicyChangeLog.PolicyType.MONITOR, "t-2", "0:0")
+        .getVersion(), equalTo("0:3"));
+  }
+
+  @Test
+  public void testConsumePolicyEvents_readFromHeaders() {
+    final UUID policyId = UUID.randomUUID();
+    eventListener.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 0L), null);
+
+    final RecordHeaders headers = new RecordHeaders();
+    headers.add(PolicyEventProducer.HEADER_POLICY_ID,
+        policyId.toString().getBytes(StandardCharsets.UTF_8));
+    headers.add(PolicyEventProducer.HEADER_TENANT_ID, "t-1".getBytes(StandardCharsets.UTF_8));
+    headers.add(PolicyEventProducer.HEADER_TARGET_CLASS,
+        TargetClassName.RemotePlugin.name().getBytes(StandardCharsets.UTF_8));
+    headers.add(PolicyEventProducer.HEADER_POLICY_GROUP, "zones".getBytes(StandardCharsets.UTF_8));
+    // as given by the deserializer, which never parses the payload of policy events
+    final Object value = new PolicyEventHandlers.Unparsed(
+        handlers.get(MetadataPolicyEvent.class.getName()), headers, () -> {
+          throw new AssertionError("parsed");
+        });
+    eventListener.consumePolicyEvents(List.of(new ConsumerRecord<>(TOPIC, 0, 0,
+        System.currentTimeMillis(), TimestampType.CREATE_TIME, null, 0, 0, null, value, headers)),
+        consumer);
+
+    verify(zonePolicyTable).markStale();
+    verify(entityCache).evict(Policy.class, policyId);
+    policyChangeLog.compiled(PolicyChangeLog.PolicyType.METADATA, policyChangeLog.positions());
+    final PolicyChangeLog.Changes changes = policyChangeLog.getChangesSince(
+        PolicyChangeLog.PolicyType.METADATA, "t-1", "0:0");
+    assertThat(changes.getPolicyIds(), equalTo(Set.of(policyId)));
+    assertThat(changes.getGroups(), equalTo(Set.of("zones")));
+  }
+
+  @Test
+  public void testConsumePolicyEvents_invalidationWithoutTenants() {
+    final UUID policyId = UUID.randomUUID();
+    // the record sent by another replica for a change that targeted no tenant
+    @SuppressWarnings("unchecked")
+    final KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    new PolicyEventProducer(kafkaTemplate, new KafkaTopicProperties())
+        .sendPolicyInvalidation(new MonitorPolicyEvent().setPolicyId(policyId), "cpu");
+    final ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+    verify(kafkaTemplate).send(sent.capture());
+    assertThat(sent.getValue().value(), nullValue());
+
+    final Headers headers = sent.getValue().headers();
+    final Object value = new TypeHeaderFilteringDeserializer(handlers)
+        .deserialize(TOPIC, headers, null);
+    eventListener.consumePolicyEvents(List.of(new ConsumerRecord<>(TOPIC, 0, 0,
+        System.currentTimeMillis(), TimestampType.CREATE_TIME, null, 0, 0, null, value, headers)),
+        consumer);
+
+    verify(policyResolutionEngine).markStale();
+    verify(entityCache).evict(Policy.class, policyId);
+    verify(sessionFactoryCache).evictQueryRegion(REGION_POLICY_QUERIES);
+    verifyZeroInteractions(zonePolicyTable);
+  }
+
+  @Test
+  public void testConsumePolicyEvents_lag() {
+    Metric lag = mock(Metric.class);
+    when(lag.metricValue()).thenReturn(42.0);
+    Metric topicLag = mock(Metric.class);
+    when(topicLag.metricValue()).thenReturn(7.0);
+    Map<MetricName, Metric> metrics = Map.of(
+        new MetricName(EventListener.METRIC_RECORDS_LAG_MAX,
+            EventListener.METRIC_GROUP_FETCH_MANAGER, "", Map.of("topic", "policies")), topicLag,
+        new MetricName(EventListener.METRIC_RECORDS_LAG_MAX,
+            EventListener.METRIC_GROUP_FETCH_MANAGER, "", Map.of("client-id", "c-1")), lag
+    );
+    when(consumer.metrics()).thenAnswer(invocation -> metrics);
+
+    eventListener.consumePolicyEvents(List.of(), consumer);
+
+    assertThat(meterRegistry.get(PolicyManagementMetrics.METRIC_EVENT_LAG)
+        .summary().max(), equalTo(42.0));
+  }
+
+  @Test
+  public void testConsumePolicyEvents_changeLog() {
+    final UUID policyId = UUID.randomUUID();
+    eventListener.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 10L), null);
+    final String version = policyChangeLog.getChangesSince(
+        PolicyChangeLog.PolicyType.MONITOR, "t-1", null).getVersion();
+
+    // a change written by another replica
+    eventListener.consumePolicyEvents(List.of(
+        record(10, System.currentTimeMillis(), monitorPolicyEvent(policyId, "t-1"), "cpu")
+    ), consumer);
+
+    // not reported until the compiled policies include it
+    PolicyChangeLog.Changes changes = policyChangeLog.getChangesSince(
+        PolicyChangeLog.PolicyType.MONITOR, "t-1", version);
+    assertThat(changes.isComplete(), equalTo(true));
+    assertThat(changes.getVersion(), equalTo(version));
+    assertThat(changes.getPolicyIds(), equalTo(Set.of()));
+
+    policyChangeLog.compiled(PolicyChangeLog.PolicyType.MONITOR, policyChangeLog.positions());
+    changes = policyChangeLog.getChangesSince(PolicyChangeLog.PolicyType.MONITOR, "t-1", version);
+    assertThat(changes.isComplete(), equalTo(true));
+    assertThat(changes.getVersion(), equalTo("0:11"));
+    assertThat(changes.getPolicyIds(), equalTo(Set.of(policyId)));
+    assertThat(changes.getGroups(), equalTo(Set.of("cpu")));
+
+    // a change to the tenant's account type by another replica
+    eventListener.consumePolicyEvents(List.of(
+        record(11, System.currentTimeMillis(), new TenantPolicyChangeEvent().setTenantId("t-1"), null)
+    ), consumer);
+
+    changes = policyChangeLog.getChangesSince(
+        PolicyChangeLog.PolicyType.MONITOR, "t-1", changes.getVersion());
+    assertThat(changes.isComplete(), equalTo(false));
+    assertThat(changes.getVersion(), equalTo("0:12"));
+    assertThat(policyChangeLog.getChangesSince(PolicyChangeLog.PolicyType.MONITOR, "t-2", "0:11")
+        .isComplete(), equalTo(true));
+  }
+
+  @Test
+  public void testOnPartitionsAssigned_resumes() {
+    final TopicPartition partition = new TopicPartition(TOPIC, 0);
+    final ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+    eventListener.onPartitionsAssigned(Map.of(partition, 10L), callback);
+    eventListener.consumePolicyEvents(List.of(
+        record(10, System.currentTimeMillis(), monitorPolicyEvent(UUID.randomUUID(), "t-1"), "cpu")
+    ), consumer);
+    verifyZeroInteractions(callback);
+
+    // no offsets were committed, so the consumer would otherwise start from the latest
+    eventListener.onPartitionsAssigned(Map.of(partition, 20L), callback);
+
+    verify(callback).seek(TOPIC, 0, 11L);
+  }
+
+  @Test
+  public void testMaxRecordsLag_notMeasured() {
+    Metric lag = mock(Metric.class);
+    when(lag.metricValue()).thenReturn(Double.NEGATIVE_INFINITY);
+
+    assertThat(Double.isNaN(EventListener.maxRecordsLag(Map.of(
+        new MetricName(EventListener.METRIC_RECORDS_LAG_MAX,
+            EventListener.METRIC_GROUP_FETCH_MANAGER, "", Map.of()), lag))), equalTo(true));
+    assertThat(Double.isNaN(EventListener.maxRecordsLag(Map.of())), equalTo(true));
+  }
+
+  private static MonitorPolicyEvent monitorPolicyEvent(UUID policyId, String tenantId) {
+    return (MonitorPolicyEvent) new MonitorPolicyEvent()
+        .setPolicyId(policyId)
+        .setTenantId(tenantId);
+  }
+
+  private static MetadataPolicyEvent metadataPolicyEvent(UUID policyId, String tenantId) {
+    return (MetadataPolicyEvent) new MetadataPolicyEvent()
+        .setTargetClassName(TargetClassName.RemotePlugin)
+        .setPolicyId(policyId)
+        .setTenantId(tenantId);
+  }
+
+  private static ConsumerRecord<String, Object> record(long offset, long timestamp, Object event,
+      String group) {
+    return record(offset, timestamp, event, group, OTHER_ORIGIN);
+  }
+
+  private static ConsumerRecord<String, Object> record(long offset, long timestamp, Object event,
+      String group, String origin) {
+    RecordHeaders headers = new RecordHeaders();
+    if (group != null) {
+      headers.add(PolicyEventProducer.HEADER_POLICY_GROUP, group.getBytes(StandardCharsets.UTF_8));
+    }
+    headers.add(PolicyEventProducer.HEADER_ORIGIN, origin.getBytes(StandardCharsets.UTF_8));
+    return new ConsumerRecord<>(TOPIC, 0, offset, timestamp, TimestampType.CREATE_TIME, null,
+        0, 0, null, event, headers);
+  }
+}
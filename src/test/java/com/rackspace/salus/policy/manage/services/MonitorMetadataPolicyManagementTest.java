@@ -34,6 +34,11 @@ import static org.mockito.Mockito.when;
 
 import com.rackspace.salus.policy.manage.TestUtility;
 import com.rackspace.salus.policy.manage.config.DatabaseConfig;
+import com.rackspace.salus.policy.manage.config.FanoutProperties;
+import com.rackspace.salus.policy.manage.config.PolicyChangeLogProperties;
+import com.rackspace.salus.policy.manage.config.PolicyResolutionProperties;
+import com.rackspace.salus.policy.manage.config.VirtualThreadsProperties;
+import com.rackspace.salus.policy.manage.config.ZonePolicyProperties;
 import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyCreate;
 import com.rackspace.salus.telemetry.entities.MetadataPolicy;
 import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
@@ -81,7 +86,12 @@ import uk.co.jemos.podam.api.PodamFactoryImpl;
 @EnableTestContainersDatabase
 @DataJpaTest(showSql = false)
 @Import({PolicyManagement.class, MonitorMetadataPolicyManagement.class,
-    TenantManagement.class, DatabaseConfig.class, SimpleMeterRegistry.class})
+    TenantManagement.class, PolicyEventFanout.class, FanoutProperties.class,
+    VirtualThreadsProperties.class, ZonePolicyTable.class, ZonePolicyProperties.class,
+    PolicyChangeLog.class, PolicyChangeLogProperties.class,
+    PolicyResolutionEngine.class, PolicyResolutionProperties.class,
+    DatabaseConfig.class, SimpleMeterRegistry.class, PolicyManagementMetrics.class,
+    PolicyTracing.class})
 public class MonitorMetadataPolicyManagementTest {
 
   private PodamFactory podamFactory = new PodamFactoryImpl();
@@ -98,6 +108,9 @@ public class MonitorMetadataPolicyManagementTest {
   @Autowired
   MonitorMetadataPolicyManagement monitorMetadataPolicyManagement;
 
+  @Autowired
+  PolicyResolutionEngine policyResolutionEngine;
+
   @Autowired
   TenantManagement tenantManagement;
 
@@ -185,7 +198,7 @@ public class MonitorMetadataPolicyManagementTest {
     assertThat(policy.getKey(), equalTo(policyCreate.getKey()));
     assertThat(policy.getValue(), equalTo(policyCreate.getValue()));
 
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     assertThat(policyEventArg.getValue(), equalTo(
         new MetadataPolicyEvent()
@@ -195,6 +208,7 @@ public class MonitorMetadataPolicyManagementTest {
             .setTenantId(tenantId)
     ));
 
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(policyEventProducer);
   }
 
@@ -221,7 +235,7 @@ public class MonitorMetadataPolicyManagementTest {
     assertThat(policy.getKey(), equalTo(policyCreate.getKey()));
     assertThat(policy.getValue(), equalTo(policyCreate.getValue()));
 
-    verify(policyEventProducer, times(5)).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer, times(5)).sendPolicyEvent(policyEventArg.capture(), any());
     assertThat(policyEventArg.getAllValues(), hasSize(5));
 
     List<MetadataPolicyEvent> expected = tenantIds.stream()
@@ -232,6 +246,7 @@ public class MonitorMetadataPolicyManagementTest {
             .setTenantId(t)).collect(Collectors.toList());
 
     assertThat(policyEventArg.getAllValues(), containsInAnyOrder(expected.toArray()));
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(policyEventProducer);
   }
 
@@ -261,7 +276,7 @@ public class MonitorMetadataPolicyManagementTest {
     assertThat(policy.getKey(), equalTo(policyCreate.getKey()));
     assertThat(policy.getValue(), equalTo(policyCreate.getValue()));
 
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     assertThat(policyEventArg.getValue(), equalTo(
         new MetadataPolicyEvent()
@@ -271,6 +286,7 @@ public class MonitorMetadataPolicyManagementTest {
             .setTenantId(tenantId)
     ));
 
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(policyEventProducer);
   }
 
@@ -324,7 +340,7 @@ public class MonitorMetadataPolicyManagementTest {
     mockGetTenantsUsingPolicyKey(List.of(tenantId));
 
     Policy policy = monitorMetadataPolicyManagement.createMetadataPolicy(policyCreate);
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     // Verify the Policy Event looks correct
     assertThat(policyEventArg.getValue(), equalTo(
@@ -348,6 +364,7 @@ public class MonitorMetadataPolicyManagementTest {
     assertThat(p.getKey(), equalTo(policyCreate.getKey()));
     assertThat(p.getValue(), equalTo(policyCreate.getValue()));
 
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(policyEventProducer);
   }
 
@@ -474,6 +491,7 @@ public class MonitorMetadataPolicyManagementTest {
             .setScope(PolicyScope.TENANT)
     );
 
+    policyResolutionEngine.reloadMetadataPolicies();
     List<MonitorMetadataPolicy> effectivePolicies = monitorMetadataPolicyManagement.getEffectiveMetadataPoliciesForTenant(tenantId);
 
     assertThat(effectivePolicies, hasSize(expected.size()));
@@ -500,7 +518,7 @@ public class MonitorMetadataPolicyManagementTest {
     verify(entityManager).createNamedQuery("Monitor.getTenantsUsingPolicyMetadataInMonitor", String.class);
     verify(query).setParameter("metadataKey", saved.getKey());
     verify(query).getResultList();
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     assertThat(policyEventArg.getValue(), equalTo(
         new MetadataPolicyEvent()
@@ -515,6 +533,7 @@ public class MonitorMetadataPolicyManagementTest {
 
     assertTrue(removed.isEmpty());
 
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(entityManager, query, policyEventProducer);
   }
 
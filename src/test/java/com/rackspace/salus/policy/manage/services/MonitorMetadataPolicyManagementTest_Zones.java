@@ -26,13 +26,18 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.rackspace.salus.policy.manage.config.DatabaseConfig;
+import com.rackspace.salus.policy.manage.config.FanoutProperties;
+import com.rackspace.salus.policy.manage.config.PolicyChangeLogProperties;
+import com.rackspace.salus.policy.manage.config.PolicyResolutionProperties;
+import com.rackspace.salus.policy.manage.config.VirtualThreadsProperties;
+import com.rackspace.salus.policy.manage.config.ZonePolicyProperties;
 import com.rackspace.salus.telemetry.entities.MetadataPolicy;
 import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
+import com.rackspace.salus.telemetry.entities.Resource;
 import com.rackspace.salus.telemetry.messaging.MetadataPolicyEvent;
 import com.rackspace.salus.telemetry.messaging.PolicyEvent;
 import com.rackspace.salus.telemetry.model.MetadataValueType;
@@ -47,6 +52,7 @@ import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
 import com.rackspace.salus.test.EnableTestContainersDatabase;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.List;
+import java.util.Map;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import org.junit.Before;
@@ -65,7 +71,12 @@ import org.springframework.test.context.junit4.SpringRunner;
 @EnableTestContainersDatabase
 @DataJpaTest(showSql = false)
 @Import({PolicyManagement.class, MonitorMetadataPolicyManagement.class,
-    TenantManagement.class, DatabaseConfig.class, SimpleMeterRegistry.class})
+    TenantManagement.class, PolicyEventFanout.class, FanoutProperties.class,
+    VirtualThreadsProperties.class, ZonePolicyTable.class, ZonePolicyProperties.class,
+    PolicyChangeLog.class, PolicyChangeLogProperties.class,
+    PolicyResolutionEngine.class, PolicyResolutionProperties.class,
+    DatabaseConfig.class, SimpleMeterRegistry.class, PolicyManagementMetrics.class,
+    PolicyTracing.class})
 public class MonitorMetadataPolicyManagementTest_Zones {
 
   @Captor
@@ -98,6 +109,9 @@ public class MonitorMetadataPolicyManagementTest_Zones {
   @Autowired
   MonitorRepository monitorRepository;
 
+  @Autowired
+  ZonePolicyTable zonePolicyTable;
+
   @MockBean
   EntityManager entityManager;
 
@@ -116,6 +130,7 @@ public class MonitorMetadataPolicyManagementTest_Zones {
         .setScope(PolicyScope.GLOBAL);
 
     monitorMetadataPolicyRepository.save(policy);
+    zonePolicyTable.reload();
   }
 
   @Test
@@ -130,6 +145,7 @@ public class MonitorMetadataPolicyManagementTest_Zones {
     String region = randomAlphabetic(5);
     List<String> zones = List.of(randomAlphabetic(5), randomAlphabetic(5));
 
+    saveResourceInRegion(tenantId, region);
     mockGetTenantsUsingPolicyKey(List.of(tenantId));
 
     MonitorMetadataPolicy policy = monitorMetadataPolicyManagement.createZonePolicy(region, zones);
@@ -140,8 +156,9 @@ public class MonitorMetadataPolicyManagementTest_Zones {
     assertThat(policy.getValueType(), equalTo(MetadataValueType.STRING_LIST));
     assertThat(policy.getKey(), equalTo(MetadataPolicy.ZONE_METADATA_PREFIX + region));
     assertThat(policy.getValue(), equalTo(String.join(",", zones)));
+    assertThat(monitorMetadataPolicyManagement.getDefaultMonitoringZones(region), equalTo(zones));
 
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     assertThat(policyEventArg.getValue(), equalTo(
         new MetadataPolicyEvent()
@@ -150,6 +167,7 @@ public class MonitorMetadataPolicyManagementTest_Zones {
             .setTenantId(tenantId)
     ));
 
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(policyEventProducer);
   }
 
@@ -161,6 +179,7 @@ public class MonitorMetadataPolicyManagementTest_Zones {
 
     MetadataPolicy policy = saveZonePolicy(region);
 
+    saveResourceInRegion(tenantId, region);
     mockGetTenantsUsingPolicyKey(List.of(tenantId));
 
     MonitorMetadataPolicy updatedPolicy = monitorMetadataPolicyManagement.updateZonePolicy(region, newZones);
@@ -168,8 +187,9 @@ public class MonitorMetadataPolicyManagementTest_Zones {
     assertThat(updatedPolicy.getId(), equalTo(policy.getId()));
     assertThat(updatedPolicy.getKey(), equalTo(MetadataPolicy.ZONE_METADATA_PREFIX + region));
     assertThat(updatedPolicy.getValue(), equalTo(String.join(",", newZones)));
+    assertThat(monitorMetadataPolicyManagement.getDefaultMonitoringZones(region), equalTo(newZones));
 
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
     assertThat(policyEventArg.getValue(), equalTo(
         new MetadataPolicyEvent()
             .setTargetClassName(TargetClassName.RemotePlugin)
@@ -178,6 +198,31 @@ public class MonitorMetadataPolicyManagementTest_Zones {
     ));
   }
 
+  @Test
+  public void testUpdateZonePolicy_onlyTenantsInRegion() {
+    String tenantInRegion = randomAlphabetic(5);
+    String tenantInOtherRegion = randomAlphabetic(5);
+    String region = randomAlphabetic(5);
+
+    MetadataPolicy policy = saveZonePolicy(region);
+
+    saveResourceInRegion(tenantInRegion, region);
+    saveResourceInRegion(tenantInOtherRegion, randomAlphabetic(6));
+    mockGetTenantsUsingPolicyKey(List.of(tenantInRegion, tenantInOtherRegion));
+
+    monitorMetadataPolicyManagement.updateZonePolicy(region, List.of(randomAlphabetic(5)));
+
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
+    assertThat(policyEventArg.getValue(), equalTo(
+        new MetadataPolicyEvent()
+            .setTargetClassName(TargetClassName.RemotePlugin)
+            .setPolicyId(policy.getId())
+            .setTenantId(tenantInRegion)
+    ));
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
+    verifyNoMoreInteractions(policyEventProducer);
+  }
+
   @Test
   public void testRemoveZonePolicy() {
     String tenantId = randomAlphabetic(5);
@@ -186,14 +231,23 @@ public class MonitorMetadataPolicyManagementTest_Zones {
     // Create a policy to remove
     MetadataPolicy policy = saveZonePolicy(region);
 
+    saveResourceInRegion(tenantId, region);
     mockGetTenantsUsingPolicyKey(List.of(tenantId));
 
     monitorMetadataPolicyManagement.removeZonePolicy(region);
     List<String> afterRemove = monitorMetadataPolicyManagement.getDefaultMonitoringZones(region);
     assertThat(afterRemove, hasSize(0));
 
-    // a zone removal does not trigger any monitors to be rebound
-    verifyNoInteractions(policyEventProducer);
+    // tenants with monitors in the region are notified so they can rebind to other zones
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
+    assertThat(policyEventArg.getValue(), equalTo(
+        new MetadataPolicyEvent()
+            .setTargetClassName(TargetClassName.RemotePlugin)
+            .setPolicyId(policy.getId())
+            .setTenantId(tenantId)
+    ));
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
+    verifyNoMoreInteractions(policyEventProducer);
   }
 
   @Test
@@ -212,6 +266,15 @@ public class MonitorMetadataPolicyManagementTest_Zones {
     when(query.getResultList()).thenReturn(tenantIds);
   }
 
+  private void saveResourceInRegion(String tenantId, String region) {
+    resourceRepository.save(new Resource()
+        .setTenantId(tenantId)
+        .setResourceId(randomAlphabetic(10))
+        .setLabels(Map.of("agent_discovered_os", "linux"))
+        .setMetadata(Map.of("region", region))
+        .setPresenceMonitoringEnabled(false));
+  }
+
   private MetadataPolicy saveZonePolicy(String region) {
     List<String> zones = List.of(randomAlphabetic(5), randomAlphabetic(5));
     return (MetadataPolicy) policyRepository.save(new MonitorMetadataPolicy()
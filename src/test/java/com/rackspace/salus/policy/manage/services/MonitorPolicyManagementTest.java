@@ -20,6 +20,7 @@ import static com.rackspace.salus.policy.manage.TestUtility.createTenantsOfAccou
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.isOneOf;
 import static org.hamcrest.Matchers.notNullValue;
@@ -27,12 +28,19 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import com.rackspace.salus.policy.manage.TestUtility;
 import com.rackspace.salus.policy.manage.config.DatabaseConfig;
+import com.rackspace.salus.policy.manage.config.FanoutProperties;
+import com.rackspace.salus.policy.manage.config.PolicyChangeLogProperties;
+import com.rackspace.salus.policy.manage.config.PolicyResolutionProperties;
+import com.rackspace.salus.policy.manage.config.PolicyStreamProperties;
+import com.rackspace.salus.policy.manage.config.VirtualThreadsProperties;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyCreate;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyUpdate;
 import com.rackspace.salus.telemetry.entities.Monitor;
@@ -51,14 +59,26 @@ import com.rackspace.salus.telemetry.repositories.ResourceRepository;
 import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
 import com.rackspace.salus.test.EnableTestContainersDatabase;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javax.persistence.EntityManager;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -70,6 +90,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import uk.co.jemos.podam.api.PodamFactory;
 import uk.co.jemos.podam.api.PodamFactoryImpl;
 
@@ -77,7 +98,12 @@ import uk.co.jemos.podam.api.PodamFactoryImpl;
 @EnableTestContainersDatabase
 @DataJpaTest(showSql = false)
 @Import({PolicyManagement.class, MonitorPolicyManagement.class,
-    TenantManagement.class, DatabaseConfig.class, SimpleMeterRegistry.class})
+    TenantManagement.class, PolicyEventFanout.class, FanoutProperties.class,
+    VirtualThreadsProperties.class, PolicyChangeLog.class, PolicyChangeLogProperties.class,
+    PolicyChangeStreams.class, PolicyStreamProperties.class,
+    PolicyResolutionEngine.class, PolicyResolutionProperties.class,
+    DatabaseConfig.class, SimpleMeterRegistry.class, PolicyManagementMetrics.class,
+    PolicyTracing.class})
 public class MonitorPolicyManagementTest {
 
   private PodamFactory podamFactory = new PodamFactoryImpl();
@@ -94,6 +120,15 @@ public class MonitorPolicyManagementTest {
   @Autowired
   MonitorPolicyManagement monitorPolicyManagement;
 
+  @Autowired
+  PolicyResolutionEngine policyResolutionEngine;
+
+  @Autowired
+  PolicyChangeLog policyChangeLog;
+
+  @Autowired
+  PolicyChangeStreams policyChangeStreams;
+
   @Autowired
   TenantManagement tenantManagement;
 
@@ -168,7 +203,7 @@ public class MonitorPolicyManagementTest {
     assertThat(policy.getName(), equalTo(policyCreate.getName()));
     assertThat(policy.getMonitorTemplateId(), equalTo(monitor.getId()));
 
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     assertThat(policyEventArg.getValue(), equalTo(
         new MonitorPolicyEvent()
@@ -177,9 +212,192 @@ public class MonitorPolicyManagementTest {
             .setTenantId(tenantId)
     ));
 
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
+    verifyNoMoreInteractions(policyEventProducer);
+  }
+
+  @Test
+  public void testCreateMonitorPolicy_noTenants() {
+    // no tenant has the account type, so no tenant is sent an event
+    String accountType = RandomStringUtils.randomAlphabetic(10);
+    Monitor monitor = TestUtility.createPolicyTemplate(monitorRepository);
+
+    MonitorPolicyCreate policyCreate = new MonitorPolicyCreate()
+        .setScope(PolicyScope.ACCOUNT_TYPE)
+        .setSubscope(accountType)
+        .setName(RandomStringUtils.randomAlphabetic(10))
+        .setMonitorTemplateId(monitor.getId());
+
+    MonitorPolicy policy = monitorPolicyManagement.createMonitorPolicy(policyCreate);
+
+    // the other replicas are still told to invalidate the policy
+    verify(policyEventProducer).sendPolicyInvalidation(policyEventArg.capture(),
+        eq(policyCreate.getName()));
+
+    assertThat(policyEventArg.getValue(), equalTo(
+        new MonitorPolicyEvent()
+            .setMonitorId(policyCreate.getMonitorTemplateId())
+            .setPolicyId(policy.getId())
+    ));
+
     verifyNoMoreInteractions(policyEventProducer);
   }
 
+  @Test
+  public void testCreateMonitorPolicy_skipsShadowedTenants() {
+    String accountType = RandomStringUtils.randomAlphabetic(10);
+    String policyName = RandomStringUtils.randomAlphabetic(10);
+    Monitor monitor = TestUtility.createPolicyTemplate(monitorRepository);
+
+    List<String> tenantIds = createTenantsOfAccountType(tenantMetadataRepository, 3, accountType);
+
+    // the first tenant has opted out of any policy with this name
+    monitorPolicyRepository.save((MonitorPolicy) new MonitorPolicy()
+        .setName(policyName)
+        .setMonitorTemplateId(null)
+        .setScope(PolicyScope.TENANT)
+        .setSubscope(tenantIds.get(0)));
+
+    MonitorPolicyCreate policyCreate = new MonitorPolicyCreate()
+        .setScope(PolicyScope.ACCOUNT_TYPE)
+        .setSubscope(accountType)
+        .setName(policyName)
+        .setMonitorTemplateId(monitor.getId());
+
+    monitorPolicyManagement.createMonitorPolicy(policyCreate);
+
+    verify(policyEventProducer, times(2)).sendPolicyEvent(policyEventArg.capture(), any());
+    assertThat(policyEventArg.getAllValues().stream()
+            .map(PolicyEvent::getTenantId)
+            .collect(Collectors.toList()),
+        containsInAnyOrder(tenantIds.get(1), tenantIds.get(2)));
+  }
+
+  @Test
+  public void testGetEffectiveMonitorPolicyDelta() {
+    String accountType = RandomStringUtils.randomAlphabetic(10);
+    String policyName = RandomStringUtils.randomAlphabetic(10);
+    Monitor monitor = TestUtility.createPolicyTemplate(monitorRepository);
+    String tenantId = createTenantsOfAccountType(tenantMetadataRepository, 1, accountType).get(0);
+    consumeSentPolicyEvents();
+
+    // an unknown version requires the client to resync
+    EffectivePolicyDelta<MonitorPolicy> delta =
+        monitorPolicyManagement.getEffectiveMonitorPolicyDelta(tenantId, "unknown:0");
+    assertTrue(delta.isFullResync());
+
+    MonitorPolicy accountPolicy = monitorPolicyManagement.createMonitorPolicy(new MonitorPolicyCreate()
+        .setScope(PolicyScope.ACCOUNT_TYPE)
+        .setSubscope(accountType)
+        .setName(policyName)
+        .setMonitorTemplateId(monitor.getId()));
+    policyResolutionEngine.reloadMonitorPolicies();
+
+    delta = monitorPolicyManagement.getEffectiveMonitorPolicyDelta(tenantId, delta.getVersion());
+    assertThat(delta.isFullResync(), equalTo(false));
+    assertThat(delta.getPolicies().stream().map(MonitorPolicy::getId).collect(Collectors.toList()),
+        equalTo(List.of(accountPolicy.getId())));
+    assertThat(delta.getRemovedPolicyIds(), hasSize(0));
+
+    MonitorPolicy optOut = monitorPolicyManagement.createMonitorPolicy(new MonitorPolicyCreate()
+        .setScope(PolicyScope.TENANT)
+        .setSubscope(tenantId)
+        .setName(policyName)
+        .setMonitorTemplateId(null));
+    policyResolutionEngine.reloadMonitorPolicies();
+    String optOutVersion = monitorPolicyManagement
+        .getEffectiveMonitorPolicyDelta(tenantId, delta.getVersion()).getVersion();
+
+    // removing the opt-out makes the account type policy effective again
+    monitorPolicyManagement.removeMonitorPolicy(optOut.getId());
+    policyResolutionEngine.reloadMonitorPolicies();
+
+    delta = monitorPolicyManagement.getEffectiveMonitorPolicyDelta(tenantId, optOutVersion);
+    assertThat(delta.isFullResync(), equalTo(false));
+    assertThat(delta.getPolicies().stream().map(MonitorPolicy::getId).collect(Collectors.toList()),
+        equalTo(List.of(accountPolicy.getId())));
+    assertThat(delta.getRemovedPolicyIds(), equalTo(Set.of(optOut.getId())));
+
+    // nothing has changed since the last version
+    delta = monitorPolicyManagement.getEffectiveMonitorPolicyDelta(tenantId, delta.getVersion());
+    assertThat(delta.getPolicies(), hasSize(0));
+    assertThat(delta.getRemovedPolicyIds(), hasSize(0));
+  }
+
+  @Test
+  public void testCreateMonitorPolicy_effectiveImmediately() {
+    String tenantId = createTenantsOfAccountType(tenantMetadataRepository, 1,
+        RandomStringUtils.randomAlphabetic(10)).get(0);
+    Monitor monitor = TestUtility.createPolicyTemplate(monitorRepository);
+
+    MonitorPolicy policy = monitorPolicyManagement.createMonitorPolicy(new MonitorPolicyCreate()
+        .setScope(PolicyScope.TENANT)
+        .setSubscope(tenantId)
+        .setName(RandomStringUtils.randomAlphabetic(10))
+        .setMonitorTemplateId(monitor.getId()));
+
+    // consumers of the policy's events read the effective policies as soon as they arrive
+    assertThat(monitorPolicyManagement.getEffectiveMonitorPoliciesForTenant(tenantId).stream()
+        .map(MonitorPolicy::getId).collect(Collectors.toList()), hasItem(policy.getId()));
+  }
+
+  @Test
+  public void testPolicyChangeStreams_effectiveWhenNotified() throws Exception {
+    String tenantId = RandomStringUtils.randomAlphabetic(10);
+    Monitor monitor = TestUtility.createPolicyTemplate(monitorRepository);
+    // partition 1 is not otherwise consumed by these tests
+    long offset = policyChangeLog.assigned(1, 0);
+    policyResolutionEngine.reload();
+
+    // the client re-fetches its effective policies as soon as it is notified
+    CompletableFuture<List<UUID>> refetched = new CompletableFuture<>();
+    policyChangeStreams.subscribe(List.of(tenantId), new SseEmitter() {
+      @Override
+      public void send(SseEventBuilder builder) {
+        refetched.complete(monitorPolicyManagement.getEffectiveMonitorPoliciesForTenant(tenantId)
+            .stream().map(MonitorPolicy::getId).collect(Collectors.toList()));
+      }
+    });
+
+    // a policy created by another replica, whose event is then consumed by this one
+    MonitorPolicy policy = monitorPolicyRepository.save((MonitorPolicy) new MonitorPolicy()
+        .setMonitorTemplateId(monitor.getId())
+        .setName(RandomStringUtils.randomAlphabetic(10))
+        .setSubscope(tenantId)
+        .setScope(PolicyScope.TENANT));
+    policyChangeLog.append(List.of(PolicyChangeLog.Change.policy(1, offset,
+        PolicyChangeLog.PolicyType.MONITOR, policy.getId(), policy.getName(), tenantId)),
+        Map.of(1, offset + 1));
+    policyResolutionEngine.markStale();
+    policyChangeStreams.publish(List.of(new MonitorPolicyEvent()
+        .setMonitorId(monitor.getId())
+        .setPolicyId(policy.getId())
+        .setTenantId(tenantId)), Map.of(1, offset + 1));
+
+    // held back until the change is compiled
+    assertThat(refetched.isDone(), equalTo(false));
+    policyResolutionEngine.reloadIfStale();
+
+    assertThat(refetched.get(5, TimeUnit.SECONDS), hasItem(policy.getId()));
+  }
+
+  /**
+   * Appends each policy event sent to the change log, as the consumer of the policies topic
+   * would when the event is read back from its single partition.
+   */
+  private void consumeSentPolicyEvents() {
+    policyChangeLog.assigned(0, 0);
+    AtomicLong offset = new AtomicLong();
+    doAnswer(invocation -> {
+      PolicyEvent event = invocation.getArgument(0);
+      long consumed = offset.getAndIncrement();
+      policyChangeLog.append(List.of(PolicyChangeLog.Change.policy(0, consumed,
+          PolicyChangeLog.PolicyType.MONITOR, event.getPolicyId(), invocation.getArgument(1),
+          event.getTenantId())), Map.of(0, consumed + 1));
+      return null;
+    }).when(policyEventProducer).sendPolicyEvent(any(), any());
+  }
+
   /**
    * This tests creating a tenant scoped policy that opts out of a global policy.
    */
@@ -208,7 +426,7 @@ public class MonitorPolicyManagementTest {
     assertThat(policy.getName(), equalTo(policyOptOut.getName()));
     assertThat(policy.getMonitorTemplateId(), nullValue());
 
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     assertThat(policyEventArg.getValue(), equalTo(
         new MonitorPolicyEvent()
@@ -217,6 +435,7 @@ public class MonitorPolicyManagementTest {
             .setTenantId(tenantId)
     ));
 
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(policyEventProducer);
   }
 
@@ -237,7 +456,7 @@ public class MonitorPolicyManagementTest {
     assertThat((policy).getName(), equalTo(policyCreate.getName()));
     assertThat((policy).getMonitorTemplateId(), equalTo(policyCreate.getMonitorTemplateId()));
 
-    verify(policyEventProducer, times(5)).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer, times(5)).sendPolicyEvent(policyEventArg.capture(), any());
     assertThat(policyEventArg.getAllValues(), hasSize(5));
 
     List<MonitorPolicyEvent> expected = tenantIds.stream()
@@ -247,6 +466,7 @@ public class MonitorPolicyManagementTest {
             .setTenantId(t)).collect(Collectors.toList());
 
     assertThat(policyEventArg.getAllValues(), containsInAnyOrder(expected.toArray()));
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(policyEventProducer);
   }
 
@@ -305,7 +525,43 @@ public class MonitorPolicyManagementTest {
     assertThat(updatedPolicy.getMonitorTemplateId(), equalTo(originalPolicy.getMonitorTemplateId()));
 
     verify(policyEventProducer, times(tenantsOnNewPolicy.size() + tenantsOnOriginalPolicy.size()))
-        .sendPolicyEvent(any());
+        .sendPolicyEvent(any(), any());
+  }
+
+  @Test
+  public void testUpdateMonitorPolicy_skipsTenantsWithOverride() {
+    MonitorPolicy originalPolicy = createAccountTypePolicy();
+    String newSubscope = RandomStringUtils.randomAlphabetic(10);
+
+    List<String> tenantsOnNewPolicy = createTenantsOfAccountType(
+        tenantMetadataRepository, 5, newSubscope);
+    List<String> tenantsOnOriginalPolicy = createTenantsOfAccountType(
+        tenantMetadataRepository, 5, originalPolicy.getSubscope());
+
+    // the first tenant on each side has its own policy of the same name, so is unaffected
+    for (String tenantId : List.of(tenantsOnNewPolicy.get(0), tenantsOnOriginalPolicy.get(0))) {
+      monitorPolicyRepository.save((MonitorPolicy) new MonitorPolicy()
+          .setName(originalPolicy.getName())
+          .setMonitorTemplateId(UUID.randomUUID())
+          .setScope(PolicyScope.TENANT)
+          .setSubscope(tenantId));
+    }
+
+    MonitorPolicyUpdate update = new MonitorPolicyUpdate()
+        .setScope(PolicyScope.ACCOUNT_TYPE)
+        .setSubscope(newSubscope);
+
+    monitorPolicyManagement.updateMonitorPolicy(originalPolicy.getId(), update);
+
+    verify(policyEventProducer, times(8)).sendPolicyEvent(policyEventArg.capture(), any());
+
+    List<String> expectedTenants = new ArrayList<>();
+    expectedTenants.addAll(tenantsOnNewPolicy.subList(1, 5));
+    expectedTenants.addAll(tenantsOnOriginalPolicy.subList(1, 5));
+    assertThat(policyEventArg.getAllValues().stream()
+            .map(PolicyEvent::getTenantId)
+            .collect(Collectors.toList()),
+        containsInAnyOrder(expectedTenants.toArray()));
   }
 
   /**
@@ -333,7 +589,7 @@ public class MonitorPolicyManagementTest {
         .setMonitorTemplateId(monitor.getId());
 
     Policy policy = monitorPolicyManagement.createMonitorPolicy(policyCreate);
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     // Verify the Policy Event looks correct
     assertThat(policyEventArg.getValue(), equalTo(
@@ -354,6 +610,7 @@ public class MonitorPolicyManagementTest {
     assertThat(p.getName(), equalTo(policyCreate.getName()));
     assertThat(p.getMonitorTemplateId(), equalTo(policyCreate.getMonitorTemplateId()));
 
+    verify(policyEventProducer).sendPolicyInvalidation(any(), any());
     verifyNoMoreInteractions(policyEventProducer);
   }
 
@@ -362,6 +619,35 @@ public class MonitorPolicyManagementTest {
    * the `expected` list.  This list is populated with those policies that we would expect
    * to be effective for the particular test tenant and account type.
    */
+  @Test
+  public void testGetEffectiveMonitorPoliciesForTenant_recordsFlightRecorderEvent()
+      throws IOException {
+    String tenantId = RandomStringUtils.randomAlphabetic(10);
+    policyRepository.save(new MonitorPolicy()
+        .setMonitorTemplateId(UUID.randomUUID())
+        .setName(RandomStringUtils.randomAlphabetic(10))
+        .setScope(PolicyScope.GLOBAL));
+    policyResolutionEngine.reloadMonitorPolicies();
+
+    Path dump = Files.createTempFile("policy-resolution", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(PolicyResolutionEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+      monitorPolicyManagement.getEffectiveMonitorPoliciesForTenant(tenantId);
+      recording.stop();
+      recording.dump(dump);
+
+      List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+          .filter(event -> tenantId.equals(event.getString("tenantId")))
+          .collect(Collectors.toList());
+      assertThat(events, hasSize(1));
+      assertThat(events.get(0).getString("policyType"), equalTo("monitor"));
+      assertThat(events.get(0).getInt("results"), equalTo(1));
+    } finally {
+      Files.deleteIfExists(dump);
+    }
+  }
+
   @Test
   public void testGetEffectiveMonitorPoliciesForTenant() {
     String tenantId = RandomStringUtils.randomNumeric(5);
@@ -443,6 +729,7 @@ public class MonitorPolicyManagementTest {
             .setScope(PolicyScope.TENANT)
     );
 
+    policyResolutionEngine.reloadMonitorPolicies();
     List<MonitorPolicy> effectivePolicies = monitorPolicyManagement.getEffectiveMonitorPoliciesForTenant(tenantId);
 
     assertThat(effectivePolicies, hasSize(5));
@@ -461,7 +748,7 @@ public class MonitorPolicyManagementTest {
 
     monitorPolicyManagement.removeMonitorPolicy(saved.getId());
 
-    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture());
+    verify(policyEventProducer).sendPolicyEvent(policyEventArg.capture(), any());
 
     assertThat(policyEventArg.getValue(), equalTo(
         new MonitorPolicyEvent()
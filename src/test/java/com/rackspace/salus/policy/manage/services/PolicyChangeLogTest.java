@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import com.rackspace.salus.policy.manage.config.PolicyChangeLogProperties;
+import com.rackspace.salus.policy.manage.services.PolicyChangeLog.Change;
+import com.rackspace.salus.policy.manage.services.PolicyChangeLog.Changes;
+import com.rackspace.salus.policy.manage.services.PolicyChangeLog.PolicyType;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.Test;
+
+public class PolicyChangeLogTest {
+
+  @Test
+  public void testGetChangesSince_versionFromOtherReplica() {
+    final UUID policyId = UUID.randomUUID();
+    final PolicyChangeLog first = new PolicyChangeLog(new PolicyChangeLogProperties());
+    final PolicyChangeLog second = new PolicyChangeLog(new PolicyChangeLogProperties());
+    for (PolicyChangeLog log : List.of(first, second)) {
+      log.assigned(0, 5);
+      log.assigned(1, 3);
+      log.compiled(PolicyType.MONITOR, log.positions());
+    }
+    final String version = first.getChangesSince(PolicyType.MONITOR, "t-1", null).getVersion();
+    assertThat(version, equalTo("0:5,1:3"));
+
+    for (PolicyChangeLog log : List.of(first, second)) {
+      log.append(List.of(Change.policy(1, 3, PolicyType.MONITOR, policyId, "cpu", "t-1")),
+          Map.of(1, 4L));
+      log.compiled(PolicyType.MONITOR, log.positions());
+    }
+
+    final Changes changes = second.getChangesSince(PolicyType.MONITOR, "t-1", version);
+    assertThat(changes.isComplete(), equalTo(true));
+    assertThat(changes.getVersion(), equalTo("0:5,1:4"));
+    assertThat(changes.getPolicyIds(), equalTo(Set.of(policyId)));
+    assertThat(changes.getGroups(), equalTo(Set.of("cpu")));
+    assertThat(first.getChangesSince(PolicyType.MONITOR, "t-1", version).getVersion(),
+        equalTo(changes.getVersion()));
+    // other types and tenants are unaffected
+    assertThat(second.getChangesSince(PolicyType.METADATA, "t-1", version).getPolicyIds(),
+        equalTo(Set.of()));
+    assertThat(second.getChangesSince(PolicyType.MONITOR, "t-2", version).getPolicyIds(),
+        equalTo(Set.of()));
+  }
+
+  @Test
+  public void testGetChangesSince_resync() {
+    final PolicyChangeLogProperties properties = new PolicyChangeLogProperties();
+    properties.setMaxEntries(2);
+    final PolicyChangeLog log = new PolicyChangeLog(properties);
+    log.assigned(0, 0);
+
+    // versions this replica has not reached, or cannot parse
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-1", "0:1").isComplete(), equalTo(false));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-1", "1:0").isComplete(), equalTo(false));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-1", "old").isComplete(), equalTo(false));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-1", "0:0").isComplete(), equalTo(true));
+
+    log.append(List.of(
+        Change.policy(0, 0, PolicyType.MONITOR, UUID.randomUUID(), "cpu", "t-1"),
+        Change.policy(0, 1, PolicyType.MONITOR, UUID.randomUUID(), null, "t-2"),
+        Change.policy(0, 2, PolicyType.MONITOR, UUID.randomUUID(), "cpu", "t-3")
+    ), Map.of(0, 3L));
+    log.compiled(PolicyType.MONITOR, log.positions());
+
+    // the change at offset 0 is no longer retained
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-3", "0:0").isComplete(), equalTo(false));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-3", "0:1").isComplete(), equalTo(true));
+    // the change at offset 1 was sent without its group
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-2", "0:1").isComplete(), equalTo(false));
+  }
+
+  @Test
+  public void testAppend_localChangesAlreadyCompiled() {
+    final PolicyChangeLog log = new PolicyChangeLog(new PolicyChangeLogProperties());
+    log.assigned(0, 0);
+    log.compiled(PolicyType.MONITOR, log.positions());
+
+    // changes made through this replica were compiled before their events were sent
+    log.append(List.of(
+        Change.policy(0, 0, PolicyType.MONITOR, UUID.randomUUID(), "cpu", "t-1", true),
+        Change.policy(0, 1, PolicyType.MONITOR, UUID.randomUUID(), "cpu", "t-1", true)
+    ), Map.of(0, 2L));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-1", "0:0").getVersion(),
+        equalTo("0:2"));
+
+    // but another replica's change waits for the next recompile, as do any after it
+    log.append(List.of(
+        Change.policy(0, 2, PolicyType.MONITOR, UUID.randomUUID(), "cpu", "t-1"),
+        Change.policy(0, 3, PolicyType.MONITOR, UUID.randomUUID(), "cpu", "t-1", true)
+    ), Map.of(0, 4L));
+    log.append(List.of(
+        Change.policy(0, 4, PolicyType.MONITOR, UUID.randomUUID(), "cpu", "t-1", true)
+    ), Map.of(0, 5L));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-1", "0:0").getVersion(),
+        equalTo("0:2"));
+  }
+
+  @Test
+  public void testAssigned_resumes() {
+    final PolicyChangeLog log = new PolicyChangeLog(new PolicyChangeLogProperties());
+    assertThat(log.assigned(0, 0), equalTo(0L));
+    log.append(List.of(Change.tenant(0, 0, "t-1")), Map.of(0, 1L));
+
+    // reassigned after a rebalance, the partition resumes where this replica left off
+    assertThat(log.assigned(0, 7), equalTo(1L));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-1", "0:0").isComplete(), equalTo(false));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-2", "0:0").isComplete(), equalTo(true));
+    assertThat(log.getChangesSince(PolicyType.MONITOR, "t-2", "0:7").isComplete(), equalTo(false));
+
+    // partitions not yet consumed start where the consumer does
+    assertThat(log.assigned(1, 4), equalTo(4L));
+  }
+}
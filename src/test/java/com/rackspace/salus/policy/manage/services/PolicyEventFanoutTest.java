@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import brave.Tracing;
+import com.rackspace.salus.policy.manage.config.FanoutProperties;
+import com.rackspace.salus.policy.manage.config.VirtualThreadsProperties;
+import com.rackspace.salus.telemetry.messaging.MonitorPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.PolicyEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PolicyEventFanoutTest {
+
+  private PolicyEventProducer policyEventProducer;
+  private PolicyEventFanout policyEventFanout;
+  private List<PolicyEvent> sent;
+  private List<String> sendingThreads;
+  private List<String> groups;
+
+  @Before
+  public void setup() {
+    sent = Collections.synchronizedList(new ArrayList<>());
+    sendingThreads = Collections.synchronizedList(new ArrayList<>());
+    groups = Collections.synchronizedList(new ArrayList<>());
+
+    policyEventProducer = mock(PolicyEventProducer.class);
+    when(policyEventProducer.getPartitionCount()).thenReturn(8);
+    doAnswer(invocation -> {
+      sent.add(invocation.getArgument(0));
+      groups.add(invocation.getArgument(1));
+      sendingThreads.add(Thread.currentThread().getName());
+      return null;
+    }).when(policyEventProducer).sendPolicyEvent(any(), any());
+
+    policyEventFanout = new PolicyEventFanout(policyEventProducer,
+        new FanoutProperties().setMaxThreads(4).setParallelThreshold(10),
+        new VirtualThreadsProperties(), new PolicyTracing((Tracing) null));
+  }
+
+  @After
+  public void tearDown() {
+    policyEventFanout.stop();
+  }
+
+  @Test
+  public void testSendPolicyEvents_belowThreshold() {
+    List<MonitorPolicyEvent> events = createEvents(5, 1);
+
+    policyEventFanout.sendPolicyEvents(events, "cpu");
+
+    assertThat(sent, equalTo(events));
+    assertThat(sendingThreads.stream().distinct().collect(Collectors.toList()),
+        equalTo(List.of(Thread.currentThread().getName())));
+  }
+
+  @Test
+  public void testSendPolicyEvents_parallelPreservesTenantOrder() {
+    List<MonitorPolicyEvent> events = createEvents(200, 3);
+
+    policyEventFanout.sendPolicyEvents(events, "cpu");
+
+    assertThat(sent, hasSize(events.size()));
+    assertThat(sent, containsInAnyOrder(events.toArray()));
+    assertThat(groups.stream().distinct().collect(Collectors.toList()), equalTo(List.of("cpu")));
+
+    // the events for each tenant must have been sent in their original order
+    for (MonitorPolicyEvent event : events) {
+      List<PolicyEvent> expected = events.stream()
+          .filter(e -> e.getTenantId().equals(event.getTenantId()))
+          .collect(Collectors.toList());
+      List<PolicyEvent> actual = sent.stream()
+          .filter(e -> e.getTenantId().equals(event.getTenantId()))
+          .collect(Collectors.toList());
+      assertThat(actual, equalTo(expected));
+    }
+  }
+
+  private List<MonitorPolicyEvent> createEvents(int tenantCount, int eventsPerTenant) {
+    List<UUID> policyIds = IntStream.range(0, eventsPerTenant)
+        .mapToObj(i -> UUID.randomUUID())
+        .collect(Collectors.toList());
+
+    List<MonitorPolicyEvent> events = new ArrayList<>();
+    for (UUID policyId : policyIds) {
+      for (int i = 0; i < tenantCount; i++) {
+        events.add((MonitorPolicyEvent) new MonitorPolicyEvent()
+            .setMonitorId(UUID.randomUUID())
+            .setPolicyId(policyId)
+            .setTenantId("tenant-" + i));
+      }
+    }
+    return events;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+import com.rackspace.salus.common.config.MetricNames;
+import com.rackspace.salus.common.config.MetricTagValues;
+import com.rackspace.salus.common.config.MetricTags;
+import com.rackspace.salus.telemetry.model.NotFoundException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+public class PolicyManagementMetricsTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final PolicyManagementMetrics metrics = new PolicyManagementMetrics(meterRegistry);
+
+  @Test
+  public void testOperation() {
+    PolicyManagementMetrics.Operation operation = metrics.operation(
+        "TestService", MetricTagValues.CREATE_OPERATION, "testObject");
+
+    operation.succeeded(System.nanoTime());
+    operation.succeeded(System.nanoTime());
+
+    assertThat(meterRegistry.get(MetricNames.SERVICE_OPERATION_SUCCEEDED)
+        .tag(MetricTags.SERVICE_METRIC_TAG, "TestService")
+        .tag(MetricTags.OPERATION_METRIC_TAG, MetricTagValues.CREATE_OPERATION)
+        .tag(MetricTags.OBJECT_TYPE_METRIC_TAG, "testObject")
+        .counter().count(), equalTo(2.0));
+    assertThat(meterRegistry.get(PolicyManagementMetrics.METRIC_OPERATION_DURATION)
+        .tag(MetricTags.SERVICE_METRIC_TAG, "TestService")
+        .timer().count(), equalTo(2L));
+  }
+
+  @Test
+  public void testPhaseTimers() {
+    PolicyManagementMetrics.PhaseTimers phases = metrics.phaseTimers("testMethod");
+
+    phases.record(PolicyManagementMetrics.PHASE_RESOLVE, 0, 5_000, 150, 7);
+    phases.record(PolicyManagementMetrics.PHASE_RESOLVE, 0, 3_000, 120, 9);
+    phases.record(PolicyManagementMetrics.PHASE_RESOLVE, 0, 1_000, 0, 0);
+    phases.record(PolicyManagementMetrics.PHASE_TENANT_LOOKUP, 0, 1_000, 150, 7);
+
+    assertThat(meterRegistry.get(PolicyManagementMetrics.METRIC_RESOLUTION_PHASE).timers(), hasSize(3));
+    assertThat(meterRegistry.get(PolicyManagementMetrics.METRIC_RESOLUTION_PHASE)
+        .tag(PolicyManagementMetrics.TAG_METHOD, "testMethod")
+        .tag(PolicyManagementMetrics.TAG_PHASE, PolicyManagementMetrics.PHASE_RESOLVE)
+        .tag(PolicyManagementMetrics.TAG_CANDIDATES, "101-1000")
+        .tag(PolicyManagementMetrics.TAG_RESULTS, "1-10")
+        .timer().count(), equalTo(2L));
+  }
+
+  @Test
+  public void testRequestStatements() {
+    metrics.requestStatements("/api/test/{id}", 3, 2_000_000);
+    metrics.requestStatements("/api/test/{id}", 5, 4_000_000);
+
+    DistributionSummary statements = meterRegistry.get(
+        PolicyManagementMetrics.METRIC_REQUEST_STATEMENTS)
+        .tag(MetricTags.URI_METRIC_TAG, "/api/test/{id}")
+        .summary();
+    assertThat(statements.count(), equalTo(2L));
+    assertThat(statements.totalAmount(), equalTo(8.0));
+    assertThat(meterRegistry.get(PolicyManagementMetrics.METRIC_REQUEST_DB_TIME)
+        .tag(MetricTags.URI_METRIC_TAG, "/api/test/{id}")
+        .summary().totalAmount(), equalTo(6.0));
+  }
+
+  @Test
+  public void testFailed() {
+    metrics.failed("/api/test/{id}", NotFoundException.class);
+    metrics.failed("/api/test/{id}", NotFoundException.class);
+    metrics.failed("/api/test/{id}", IllegalArgumentException.class);
+
+    assertThat(meterRegistry.get(MetricNames.SERVICE_OPERATION_FAILED).counters(), hasSize(2));
+    assertThat(meterRegistry.get(MetricNames.SERVICE_OPERATION_FAILED)
+        .tag(MetricTags.URI_METRIC_TAG, "/api/test/{id}")
+        .tag(MetricTags.EXCEPTION_METRIC_TAG, "NotFoundException")
+        .counter().count(), equalTo(2.0));
+  }
+}
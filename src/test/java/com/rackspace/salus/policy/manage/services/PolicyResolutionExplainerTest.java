@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.rackspace.salus.policy.manage.config.JdbcStatementListener;
+import com.rackspace.salus.policy.manage.web.model.PolicyResolutionExplanationDTO;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public class PolicyResolutionExplainerTest {
+
+  @Test
+  public void testExplain_countsOnlyStatementsOfCurrentThread() {
+    TenantManagement tenantManagement = mock(TenantManagement.class);
+    PolicyResolutionEngine policyResolutionEngine = mock(PolicyResolutionEngine.class);
+    when(tenantManagement.getAccountTypeByTenant("t-1")).thenAnswer(invocation -> {
+      executeStatement();
+      // statements run concurrently by another thread are not counted
+      CompletableFuture.runAsync(() -> {
+        JdbcStatementListener.begin();
+        executeStatement();
+        executeStatement();
+        JdbcStatementListener.end();
+      }).join();
+      return "managed";
+    });
+    when(policyResolutionEngine.explainMonitorPolicies("t-1", "managed")).thenReturn(List.of());
+    when(policyResolutionEngine.explainMetadataPolicies("t-1", "managed")).thenReturn(List.of());
+
+    PolicyResolutionExplanationDTO explanation =
+        new PolicyResolutionExplainer(tenantManagement, policyResolutionEngine).explain("t-1");
+
+    assertThat(explanation.getAccountType(), equalTo("managed"));
+    assertThat(explanation.getSteps().get(0).getName(),
+        equalTo(PolicyResolutionExplainer.STEP_TENANT_LOOKUP));
+    assertThat(explanation.getSteps().get(0).getStatementCount(), equalTo(1));
+    assertThat(explanation.getSteps().get(1).getStatementCount(), equalTo(0));
+    assertThat(explanation.getSteps().get(2).getStatementCount(), equalTo(0));
+    // the counting started for the explanation is stopped with it
+    assertThat(JdbcStatementListener.current(), nullValue());
+  }
+
+  private static void executeStatement() {
+    JdbcStatementListener listener = new JdbcStatementListener();
+    listener.jdbcExecuteStatementStart();
+    listener.jdbcExecuteStatementEnd();
+  }
+}
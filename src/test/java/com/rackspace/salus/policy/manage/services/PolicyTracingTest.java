@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+import brave.Tracing;
+import brave.propagation.TraceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+import zipkin2.Span;
+
+public class PolicyTracingTest {
+
+  private final List<Span> spans = Collections.synchronizedList(new ArrayList<>());
+  private final Tracing tracing = Tracing.newBuilder().spanReporter(spans::add).build();
+  private final PolicyTracing policyTracing = new PolicyTracing(tracing);
+
+  @After
+  public void tearDown() {
+    tracing.close();
+  }
+
+  @Test
+  public void testInSpan() {
+    String result = policyTracing.inSpan("test-span", span -> {
+      span.tag(PolicyTracing.TAG_TENANT_COUNT, "3");
+      return "done";
+    });
+
+    assertThat(result, equalTo("done"));
+    assertThat(spans, hasSize(1));
+    assertThat(spans.get(0).name(), equalTo("test-span"));
+    assertThat(spans.get(0).tags().get(PolicyTracing.TAG_TENANT_COUNT), equalTo("3"));
+  }
+
+  @Test
+  public void testWrap_propagatesTraceContext() throws Exception {
+    ExecutorService executor = policyTracing.wrap(Executors.newSingleThreadExecutor());
+    try {
+      TraceContext workerContext = policyTracing.inSpan("test-span", span -> {
+        try {
+          Future<TraceContext> future = executor.submit(
+              () -> tracing.currentTraceContext().get());
+          return future.get();
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+
+      assertThat(workerContext.traceIdString(), equalTo(spans.get(0).traceId()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testInSpan_withoutTracing() {
+    PolicyTracing untraced = new PolicyTracing((Tracing) null);
+
+    assertThat(untraced.inSpan("test-span", span -> "done"), equalTo("done"));
+    assertThat(spans, hasSize(0));
+  }
+}
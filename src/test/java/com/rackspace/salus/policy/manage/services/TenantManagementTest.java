@@ -32,7 +32,9 @@ import com.rackspace.salus.telemetry.messaging.TenantPolicyChangeEvent;
 import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
 import com.rackspace.salus.test.EnableTestContainersDatabase;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -51,7 +53,7 @@ import uk.co.jemos.podam.api.PodamFactoryImpl;
 @EnableTestContainersDatabase
 @DataJpaTest(showSql = false)
 @Import({TenantManagement.class, DatabaseConfig.class,
-    SimpleMeterRegistry.class})
+    SimpleMeterRegistry.class, PolicyManagementMetrics.class})
 public class TenantManagementTest {
 
   private PodamFactory podamFactory = new PodamFactoryImpl();
@@ -99,6 +101,25 @@ public class TenantManagementTest {
     verifyNoMoreInteractions(policyEventProducer);
   }
 
+  @Test
+  public void testGetAccountTypes_onlyGivenTenants() {
+    TenantMetadata other = tenantMetadataRepository.save(podamFactory.manufacturePojo(TenantMetadata.class));
+
+    // enough unknown tenants to be looked up across more than one query
+    List<String> tenantIds = new ArrayList<>();
+    for (int i = 0; i < 1500; i++) {
+      tenantIds.add(RandomStringUtils.randomAlphabetic(10));
+    }
+    tenantIds.add(defaultMetadata.getTenantId());
+
+    Map<String, String> accountTypes = tenantManagement.getAccountTypes(tenantIds);
+    assertThat(accountTypes, equalTo(
+        Map.of(defaultMetadata.getTenantId(), defaultMetadata.getAccountType())));
+    assertThat(accountTypes.containsKey(other.getTenantId()), equalTo(false));
+
+    verifyNoMoreInteractions(policyEventProducer);
+  }
+
   @Test
   public void testCreateTenantMetadata() {
     String tenantId = RandomStringUtils.randomAlphabetic(10);
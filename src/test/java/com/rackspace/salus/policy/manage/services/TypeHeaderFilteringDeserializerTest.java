@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.rackspace.salus.telemetry.messaging.MetadataPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.MonitorPolicyEvent;
+import com.rackspace.salus.telemetry.messaging.TenantPolicyChangeEvent;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+public class TypeHeaderFilteringDeserializerTest {
+
+  private static final String TOPIC = "telemetry.policies.json";
+
+  private PolicyEventHandlers handlers;
+  private TypeHeaderFilteringDeserializer deserializer;
+  private JsonSerializer<Object> serializer;
+  private List<Object> handled;
+
+  @Before
+  public void setup() {
+    handled = new ArrayList<>();
+    handlers = new PolicyEventHandlers();
+    handlers.onType(MonitorPolicyEvent.class,
+        (batch, event) -> handled.add(event.header(PolicyEventProducer.HEADER_POLICY_ID)));
+    handlers.on(MetadataPolicyEvent.class, (batch, event) -> handled.add(event));
+
+    deserializer = new TypeHeaderFilteringDeserializer(handlers);
+    deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "*"), false);
+    serializer = new JsonSerializer<>();
+  }
+
+  @Test
+  public void testDeserialize_unhandledType() {
+    RecordHeaders headers = new RecordHeaders();
+    byte[] data = serializer.serialize(TOPIC, headers,
+        new TenantPolicyChangeEvent().setTenantId("t-1"));
+
+    Object result = deserializer.deserialize(TOPIC, headers, data);
+
+    assertThat(result, sameInstance(PolicyEventHandlers.UNHANDLED));
+    handlers.dispatch(new PolicyEventBatch("replica"), result);
+    assertThat(handled.isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void testDeserialize_payloadNotRequired() {
+    RecordHeaders headers = new RecordHeaders();
+    serializer.serialize(TOPIC, headers, new MonitorPolicyEvent());
+    headers.add(PolicyEventProducer.HEADER_POLICY_ID, "p-1".getBytes(StandardCharsets.UTF_8));
+
+    // the payload is never read, so it does not need to be valid
+    Object result = deserializer.deserialize(TOPIC, headers,
+        "not json".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(result, instanceOf(PolicyEventHandlers.Unparsed.class));
+    handlers.dispatch(new PolicyEventBatch("replica"), result);
+    assertThat(handled, equalTo(List.of("p-1")));
+  }
+
+  @Test
+  public void testDeserialize_handledType() {
+    MetadataPolicyEvent event = (MetadataPolicyEvent) new MetadataPolicyEvent()
+        .setPolicyId(UUID.randomUUID())
+        .setTenantId("t-1");
+    RecordHeaders headers = new RecordHeaders();
+    byte[] data = serializer.serialize(TOPIC, headers, event);
+
+    Object result = deserializer.deserialize(TOPIC, headers, data);
+
+    assertThat(result, instanceOf(MetadataPolicyEvent.class));
+    handlers.dispatch(new PolicyEventBatch("replica"), result);
+    assertThat(handled, equalTo(List.of(event)));
+  }
+}
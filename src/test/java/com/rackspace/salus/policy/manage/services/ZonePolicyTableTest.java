@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.services;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.rackspace.salus.policy.manage.repositories.MonitorMetadataPolicyLookupRepository;
+import com.rackspace.salus.telemetry.entities.MetadataPolicy;
+import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
+import com.rackspace.salus.telemetry.model.MetadataValueType;
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import com.rackspace.salus.telemetry.model.TargetClassName;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZonePolicyTableTest {
+
+  private MonitorMetadataPolicyLookupRepository repository;
+  private ZonePolicyTable zonePolicyTable;
+
+  @Before
+  public void setup() {
+    repository = mock(MonitorMetadataPolicyLookupRepository.class);
+    zonePolicyTable = new ZonePolicyTable(repository);
+  }
+
+  @Test
+  public void testReload() {
+    when(repository.findAllByScopeAndTargetClassNameAndKeyStartingWith(
+        PolicyScope.GLOBAL, TargetClassName.RemotePlugin, MetadataPolicy.ZONE_METADATA_PREFIX))
+        .thenReturn(List.of(zonePolicy("dfw", "zone-1,zone-2")));
+
+    zonePolicyTable.reload();
+
+    assertThat(zonePolicyTable.getZones("dfw"), equalTo(List.of("zone-1", "zone-2")));
+  }
+
+  @Test
+  public void testReload_discardedAfterLocalChange() {
+    // the local change is applied while the reload is reading the previous content
+    when(repository.findAllByScopeAndTargetClassNameAndKeyStartingWith(
+        PolicyScope.GLOBAL, TargetClassName.RemotePlugin, MetadataPolicy.ZONE_METADATA_PREFIX))
+        .thenAnswer(invocation -> {
+          zonePolicyTable.put(zonePolicy("dfw", "zone-new"));
+          return List.of(zonePolicy("dfw", "zone-old"));
+        });
+
+    zonePolicyTable.reload();
+
+    assertThat(zonePolicyTable.getZones("dfw"), equalTo(List.of("zone-new")));
+  }
+
+  private static MonitorMetadataPolicy zonePolicy(String region, String zones) {
+    return (MonitorMetadataPolicy) new MonitorMetadataPolicy()
+        .setTargetClassName(TargetClassName.RemotePlugin)
+        .setValueType(MetadataValueType.STRING_LIST)
+        .setKey(MetadataPolicy.ZONE_METADATA_PREFIX + region)
+        .setValue(zones)
+        .setScope(PolicyScope.GLOBAL)
+        .setId(UUID.randomUUID());
+  }
+}
@@ -18,16 +18,20 @@ package com.rackspace.salus.policy.manage.web.client;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyDTO;
+import com.rackspace.salus.policy.manage.web.model.ZonePoliciesDTO;
 import com.rackspace.salus.telemetry.model.MetadataValueType;
 import com.rackspace.salus.telemetry.model.MonitorType;
 import com.rackspace.salus.telemetry.model.TargetClassName;
 import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
+import java.util.List;
 import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,6 +44,8 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.client.ExpectedCount;
@@ -239,4 +245,39 @@ public class PolicyApiClientTest {
     mockServer.verify();
   }
 
+  /**
+   * Tests that refreshing the zones of all regions revalidates the previously retrieved zones.
+   *
+   * @throws JsonProcessingException
+   */
+  @Test
+  public void testGetAllDefaultMonitoringZones_revalidates() throws JsonProcessingException {
+    ZonePoliciesDTO expectedZones = new ZonePoliciesDTO("v1", Map.of(
+        "public/us-east", List.of("public/us-east-1", "public/us-east-2"),
+        "public/uk-west", List.of("public/uk-west-1")));
+
+    mockServer.expect(ExpectedCount.once(),
+        requestTo("/api/admin/policy/metadata/zones"))
+        .andRespond(withSuccess(
+            objectMapper.writeValueAsString(expectedZones), MediaType.APPLICATION_JSON
+        ));
+    mockServer.expect(ExpectedCount.once(),
+        requestTo("/api/admin/policy/metadata/zones"))
+        .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+        .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+    // first request will populate the cache
+    ZonePoliciesDTO zones = policyApiClient.getAllDefaultMonitoringZones(true);
+    assertThat(zones, equalTo(expectedZones));
+
+    // the same request is served by the cache
+    zones = policyApiClient.getAllDefaultMonitoringZones(true);
+    assertThat(zones, equalTo(expectedZones));
+
+    // bypassing the cache only revalidates the zones already retrieved
+    zones = policyApiClient.getAllDefaultMonitoringZones(false);
+    assertThat(zones, equalTo(expectedZones));
+
+    mockServer.verify();
+  }
 }
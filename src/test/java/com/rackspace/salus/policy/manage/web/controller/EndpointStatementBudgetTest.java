@@ -0,0 +1,337 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.controller;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rackspace.salus.policy.manage.TestUtility;
+import com.rackspace.salus.policy.manage.config.DatabaseConfig;
+import com.rackspace.salus.policy.manage.config.FanoutProperties;
+import com.rackspace.salus.policy.manage.config.PolicyChangeLogProperties;
+import com.rackspace.salus.policy.manage.config.PolicyResolutionProperties;
+import com.rackspace.salus.policy.manage.config.VirtualThreadsProperties;
+import com.rackspace.salus.policy.manage.config.ZonePolicyProperties;
+import com.rackspace.salus.policy.manage.services.MonitorMetadataPolicyManagement;
+import com.rackspace.salus.policy.manage.services.MonitorPolicyManagement;
+import com.rackspace.salus.policy.manage.services.PolicyChangeLog;
+import com.rackspace.salus.policy.manage.services.PolicyEventFanout;
+import com.rackspace.salus.policy.manage.services.PolicyEventProducer;
+import com.rackspace.salus.policy.manage.services.PolicyManagement;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
+import com.rackspace.salus.policy.manage.services.PolicyResolutionEngine;
+import com.rackspace.salus.policy.manage.services.PolicyTracing;
+import com.rackspace.salus.policy.manage.services.TenantManagement;
+import com.rackspace.salus.policy.manage.services.ZonePolicyTable;
+import com.rackspace.salus.policy.manage.web.model.MetadataPolicyUpdate;
+import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyCreate;
+import com.rackspace.salus.policy.manage.web.model.MonitorPolicyCreate;
+import com.rackspace.salus.policy.manage.web.model.MonitorPolicyUpdate;
+import com.rackspace.salus.policy.manage.web.model.TenantMetadataCU;
+import com.rackspace.salus.policy.manage.web.model.ZoneMetadataPolicyCreate;
+import com.rackspace.salus.policy.manage.web.model.ZoneMetadataPolicyUpdate;
+import com.rackspace.salus.telemetry.entities.Monitor;
+import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
+import com.rackspace.salus.telemetry.entities.MonitorPolicy;
+import com.rackspace.salus.telemetry.model.MetadataValueType;
+import com.rackspace.salus.telemetry.model.MonitorType;
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import com.rackspace.salus.telemetry.model.TargetClassName;
+import com.rackspace.salus.telemetry.repositories.MonitorMetadataPolicyRepository;
+import com.rackspace.salus.telemetry.repositories.MonitorPolicyRepository;
+import com.rackspace.salus.telemetry.repositories.MonitorRepository;
+import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
+import com.rackspace.salus.test.EnableTestContainersDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+/**
+ * Asserts the maximum number of SQL statements executed by each admin endpoint.
+ *
+ * <p>
+ *   The controllers run against the real services and a real database with hibernate
+ *   statistics enabled. The data is spread across more tenants and policies than any budget,
+ *   so a query issued per tenant or per policy fails the test rather than going unnoticed.
+ *   The second-level cache is cleared before each request so the counts are for a cold cache.
+ * </p>
+ */
+@RunWith(SpringRunner.class)
+@EnableTestContainersDatabase
+@WebMvcTest({MonitorPolicyApiController.class, MetadataPolicyApiController.class,
+    TenantApiController.class})
+@AutoConfigureDataJpa
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({PolicyManagement.class, MonitorPolicyManagement.class,
+    MonitorMetadataPolicyManagement.class, TenantManagement.class, PolicyEventFanout.class,
+    FanoutProperties.class, VirtualThreadsProperties.class, ZonePolicyTable.class,
+    ZonePolicyProperties.class, PolicyChangeLog.class, PolicyChangeLogProperties.class,
+    PolicyResolutionEngine.class, PolicyResolutionProperties.class,
+    DatabaseConfig.class, SimpleMeterRegistry.class, PolicyManagementMetrics.class,
+    PolicyTracing.class})
+public class EndpointStatementBudgetTest {
+
+  private static final int TENANT_COUNT = 20;
+  private static final int POLICY_COUNT = 20;
+  private static final String ACCOUNT_TYPE = "budget-test";
+  private static final String REGION = "budget-region";
+
+  // reads of a single row
+  private static final int SINGLE_READ_BUDGET = 1;
+  // the tenant's account type lookup, plus a spare for the row count of paged reads
+  private static final int LIST_READ_BUDGET = 2;
+  // lookups, the write itself, the affected tenants and recompiling the policies
+  private static final int POLICY_WRITE_BUDGET = 12;
+  // the tenant lookup, the write and its metadata collection
+  private static final int TENANT_WRITE_BUDGET = 4;
+
+  @Autowired
+  MockMvc mvc;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  MonitorPolicyRepository monitorPolicyRepository;
+
+  @Autowired
+  MonitorMetadataPolicyRepository monitorMetadataPolicyRepository;
+
+  @Autowired
+  TenantMetadataRepository tenantMetadataRepository;
+
+  @Autowired
+  MonitorRepository monitorRepository;
+
+  @Autowired
+  MonitorMetadataPolicyManagement monitorMetadataPolicyManagement;
+
+  @Autowired
+  PolicyResolutionEngine policyResolutionEngine;
+
+  @MockBean
+  PolicyEventProducer policyEventProducer;
+
+  private Statistics statistics;
+  private String tenantId;
+  private Monitor monitorTemplate;
+  private final List<MonitorPolicy> monitorPolicies = new ArrayList<>();
+  private final List<MonitorMetadataPolicy> metadataPolicies = new ArrayList<>();
+
+  @Before
+  public void setup() {
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    List<String> tenantIds = TestUtility.createTenantsOfAccountType(
+        tenantMetadataRepository, TENANT_COUNT, ACCOUNT_TYPE);
+    tenantId = tenantIds.get(0);
+    monitorTemplate = TestUtility.createPolicyTemplate(monitorRepository);
+
+    for (int i = 0; i < POLICY_COUNT; i++) {
+      monitorPolicies.add(monitorPolicyRepository.save((MonitorPolicy) new MonitorPolicy()
+          .setMonitorTemplateId(monitorTemplate.getId())
+          .setName("budget-" + i)
+          .setScope(i % 2 == 0 ? PolicyScope.GLOBAL : PolicyScope.ACCOUNT_TYPE)
+          .setSubscope(i % 2 == 0 ? null : ACCOUNT_TYPE)));
+      metadataPolicies.add(monitorMetadataPolicyRepository.save(
+          (MonitorMetadataPolicy) new MonitorMetadataPolicy()
+              .setMonitorType(i % 2 == 0 ? null : MonitorType.ping)
+              .setTargetClassName(TargetClassName.Monitor)
+              .setValueType(MetadataValueType.STRING)
+              .setKey("budget-" + i)
+              .setValue(RandomStringUtils.randomAlphabetic(10))
+              .setScope(PolicyScope.GLOBAL)));
+    }
+    monitorMetadataPolicyManagement.createZonePolicy(REGION, List.of("public/budget-zone"));
+    policyResolutionEngine.reload();
+  }
+
+  @After
+  public void tearDown() {
+    monitorPolicyRepository.deleteAll();
+    monitorMetadataPolicyRepository.deleteAll();
+    tenantMetadataRepository.deleteAll();
+    monitorRepository.deleteAll();
+  }
+
+  @Test
+  public void testMonitorPolicyReads() throws Exception {
+    assertBudget(SINGLE_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/monitors/{uuid}", monitorPolicies.get(0).getId()));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/monitors"));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/monitors/effective/{tenantId}", tenantId));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/monitors/effective/{tenantId}/changes", tenantId));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/monitors/effective/{tenantId}/monitor-ids", tenantId));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/monitors/effective/{tenantId}/policy-ids", tenantId));
+  }
+
+  @Test
+  public void testMonitorPolicyWrites() throws Exception {
+    assertBudget(POLICY_WRITE_BUDGET, status().isCreated(),
+        post("/api/admin/policy/monitors").content(json(new MonitorPolicyCreate()
+            .setName("budget-new")
+            .setScope(PolicyScope.GLOBAL)
+            .setMonitorTemplateId(monitorTemplate.getId()))));
+    assertBudget(POLICY_WRITE_BUDGET, status().isCreated(),
+        post("/api/admin/policy/monitors/opt-out").content(json(new MonitorPolicyCreate()
+            .setName("budget-0")
+            .setScope(PolicyScope.TENANT)
+            .setSubscope(tenantId))));
+    assertBudget(POLICY_WRITE_BUDGET, status().isOk(),
+        put("/api/admin/policy/monitors/{uuid}", monitorPolicies.get(1).getId())
+            .content(json(new MonitorPolicyUpdate()
+                .setScope(PolicyScope.TENANT)
+                .setSubscope(tenantId))));
+    assertBudget(POLICY_WRITE_BUDGET, status().isNoContent(),
+        delete("/api/admin/policy/monitors/{uuid}", monitorPolicies.get(2).getId()));
+  }
+
+  @Test
+  public void testMetadataPolicyReads() throws Exception {
+    assertBudget(SINGLE_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/metadata/monitor/{uuid}", metadataPolicies.get(0).getId()));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/metadata/monitor"));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/metadata/monitor/effective/{tenantId}", tenantId));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/metadata/monitor/effective/{tenantId}/changes", tenantId));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/metadata/monitor/effective/{tenantId}/{className}/{monitorType}",
+            tenantId, TargetClassName.Monitor, MonitorType.ping));
+    assertBudget(SINGLE_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/metadata/zones/{region}", REGION));
+    assertBudget(SINGLE_READ_BUDGET, status().isOk(),
+        get("/api/admin/policy/metadata/zones"));
+  }
+
+  @Test
+  public void testMetadataPolicyWrites() throws Exception {
+    MonitorMetadataPolicyCreate create = new MonitorMetadataPolicyCreate()
+        .setMonitorType(MonitorType.ping);
+    create.setScope(PolicyScope.ACCOUNT_TYPE)
+        .setSubscope(ACCOUNT_TYPE)
+        .setTargetClassName(TargetClassName.Monitor)
+        .setValueType(MetadataValueType.STRING)
+        .setKey("budget-new")
+        .setValue("value");
+
+    assertBudget(POLICY_WRITE_BUDGET, status().isCreated(),
+        post("/api/admin/policy/metadata/monitor").content(json(create)));
+    assertBudget(POLICY_WRITE_BUDGET, status().isOk(),
+        put("/api/admin/policy/metadata/monitor/{uuid}", metadataPolicies.get(0).getId())
+            .content(json(new MetadataPolicyUpdate()
+                .setValueType(MetadataValueType.STRING)
+                .setValue("updated"))));
+    assertBudget(POLICY_WRITE_BUDGET, status().isNoContent(),
+        delete("/api/admin/policy/metadata/monitor/{uuid}", metadataPolicies.get(1).getId()));
+
+    assertBudget(POLICY_WRITE_BUDGET, status().isCreated(),
+        post("/api/admin/policy/metadata/zones").content(json(new ZoneMetadataPolicyCreate()
+            .setRegion("budget-new-region")
+            .setMonitoringZones(List.of("public/budget-zone")))));
+    assertBudget(POLICY_WRITE_BUDGET, status().isOk(),
+        put("/api/admin/policy/metadata/zones/{region}", REGION)
+            .content(json(new ZoneMetadataPolicyUpdate()
+                .setMonitoringZones(List.of("public/other-zone")))));
+    assertBudget(POLICY_WRITE_BUDGET, status().isNoContent(),
+        delete("/api/admin/policy/metadata/zones/{region}", REGION));
+  }
+
+  @Test
+  public void testTenantMetadataReads() throws Exception {
+    assertBudget(SINGLE_READ_BUDGET, status().isOk(),
+        get("/api/admin/tenant-metadata/{tenantId}", tenantId));
+    assertBudget(LIST_READ_BUDGET, status().isOk(),
+        get("/api/admin/tenant-metadata"));
+  }
+
+  @Test
+  public void testTenantMetadataWrites() throws Exception {
+    String newTenantId = RandomStringUtils.randomAlphanumeric(10);
+
+    assertBudget(TENANT_WRITE_BUDGET, status().isCreated(),
+        post("/api/admin/tenant-metadata").content(json(new TenantMetadataCU()
+            .setTenantId(newTenantId)
+            .setAccountType(ACCOUNT_TYPE)
+            .setMetadata(Map.of("key", "value")))));
+    assertBudget(TENANT_WRITE_BUDGET, status().isOk(),
+        put("/api/admin/tenant-metadata/{tenantId}", tenantId)
+            .content(json(new TenantMetadataCU().setAccountType("other"))));
+    assertBudget(TENANT_WRITE_BUDGET, status().isNoContent(),
+        delete("/api/admin/tenant-metadata/{tenantId}", newTenantId));
+  }
+
+  /**
+   * Performs the request against a cold second-level cache and asserts the number of
+   * statements it prepared is within the budget.
+   */
+  private void assertBudget(int budget, ResultMatcher expectedStatus,
+      MockHttpServletRequestBuilder request) throws Exception {
+    entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+    final long before = statistics.getPrepareStatementCount();
+    final MockHttpServletRequest performed = mvc.perform(
+        request.contentType(MediaType.APPLICATION_JSON))
+        .andExpect(expectedStatus)
+        .andReturn().getRequest();
+    final long statements = statistics.getPrepareStatementCount() - before;
+
+    assertThat(String.format("Statements executed by %s %s",
+        performed.getMethod(), performed.getRequestURI()),
+        statements, lessThanOrEqualTo((long) budget));
+  }
+
+  private String json(Object content) throws Exception {
+    return objectMapper.writeValueAsString(content);
+  }
+}
@@ -35,6 +35,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rackspace.salus.policy.manage.services.MonitorMetadataPolicyManagement;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
 import com.rackspace.salus.policy.manage.web.model.MonitorMetadataPolicyCreate;
 import com.rackspace.salus.policy.manage.web.model.MetadataPolicyUpdate;
 import com.rackspace.salus.telemetry.entities.MonitorMetadataPolicy;
@@ -67,7 +68,7 @@ import uk.co.jemos.podam.api.PodamFactoryImpl;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(MetadataPolicyApiController.class)
-@Import({SimpleMeterRegistry.class})
+@Import({SimpleMeterRegistry.class, PolicyManagementMetrics.class})
 public class MetadataPolicyApiControllerTest {
   private PodamFactory podamFactory = new PodamFactoryImpl();
 
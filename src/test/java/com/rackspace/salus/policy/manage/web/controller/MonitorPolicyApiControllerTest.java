@@ -32,6 +32,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyDTO;
 import com.rackspace.salus.policy.manage.web.model.MonitorPolicyUpdate;
 import com.rackspace.salus.telemetry.model.PolicyScope;
@@ -61,7 +62,7 @@ import uk.co.jemos.podam.api.PodamFactoryImpl;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(MonitorPolicyApiController.class)
-@Import({SimpleMeterRegistry.class})
+@Import({SimpleMeterRegistry.class, PolicyManagementMetrics.class})
 public class MonitorPolicyApiControllerTest {
 
   private PodamFactory podamFactory = new PodamFactoryImpl();
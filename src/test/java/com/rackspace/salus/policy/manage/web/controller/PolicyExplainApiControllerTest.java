@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.controller;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
+import com.rackspace.salus.policy.manage.services.PolicyResolutionExplainer;
+import com.rackspace.salus.policy.manage.web.model.PolicyResolutionExplanationDTO;
+import com.rackspace.salus.policy.manage.web.model.PolicyResolutionExplanationDTO.Candidate;
+import com.rackspace.salus.policy.manage.web.model.PolicyResolutionExplanationDTO.Step;
+import com.rackspace.salus.telemetry.model.PolicyScope;
+import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(PolicyExplainApiController.class)
+@Import({SimpleMeterRegistry.class, PolicyManagementMetrics.class})
+public class PolicyExplainApiControllerTest {
+
+  @Autowired
+  MockMvc mvc;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @MockBean
+  PolicyResolutionExplainer policyResolutionExplainer;
+
+  @MockBean
+  TenantMetadataRepository tenantMetadataRepository;
+
+  @Test
+  public void testExplain() throws Exception {
+    String tenantId = RandomStringUtils.randomAlphabetic(10);
+    PolicyResolutionExplanationDTO explanation = new PolicyResolutionExplanationDTO()
+        .setTenantId(tenantId)
+        .setAccountType("managed")
+        .setSteps(List.of(
+            new Step().setName("tenant_lookup").setDurationMicros(250).setStatementCount(1)))
+        .setMonitorPolicies(List.of(
+            new Candidate().setKey("cpu").setPolicyId(UUID.randomUUID())
+                .setScope(PolicyScope.ACCOUNT_TYPE).setSubscope("managed").setEffective(true),
+            new Candidate().setKey("cpu").setPolicyId(UUID.randomUUID())
+                .setScope(PolicyScope.GLOBAL).setEffective(false)))
+        .setMetadataPolicies(List.of());
+
+    when(policyResolutionExplainer.explain(tenantId)).thenReturn(explanation);
+
+    mvc.perform(get("/api/admin/policy/explain/{tenantId}", tenantId)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(content().json(objectMapper.writeValueAsString(explanation), true));
+
+    verify(policyResolutionExplainer).explain(tenantId);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.controller;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.rackspace.salus.policy.manage.config.PolicyChangeLogProperties;
+import com.rackspace.salus.policy.manage.config.PolicyStreamProperties;
+import com.rackspace.salus.policy.manage.services.PolicyChangeLog;
+import com.rackspace.salus.policy.manage.services.PolicyChangeStreams;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
+import com.rackspace.salus.telemetry.messaging.MonitorPolicyEvent;
+import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(PolicyStreamApiController.class)
+@Import({SimpleMeterRegistry.class, PolicyManagementMetrics.class, PolicyChangeStreams.class,
+    PolicyStreamProperties.class, PolicyChangeLog.class, PolicyChangeLogProperties.class})
+public class PolicyStreamApiControllerTest {
+
+  @Autowired
+  MockMvc mvc;
+
+  @Autowired
+  PolicyChangeStreams policyChangeStreams;
+
+  @MockBean
+  TenantMetadataRepository tenantMetadataRepository;
+
+  @Test
+  public void testStreamPolicyChanges() throws Exception {
+    String tenantId = RandomStringUtils.randomAlphabetic(10);
+    String otherTenantId = RandomStringUtils.randomAlphabetic(10);
+    UUID policyId = UUID.randomUUID();
+    UUID otherPolicyId = UUID.randomUUID();
+
+    MvcResult result = mvc.perform(get("/api/admin/policy/stream")
+        .param("tenantIds", tenantId, RandomStringUtils.randomAlphabetic(10)))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    policyChangeStreams.publish(List.of(
+        new MonitorPolicyEvent()
+            .setMonitorId(UUID.randomUUID())
+            .setPolicyId(policyId)
+            .setTenantId(tenantId),
+        new MonitorPolicyEvent()
+            .setMonitorId(UUID.randomUUID())
+            .setPolicyId(otherPolicyId)
+            .setTenantId(otherTenantId)
+    ), Map.of());
+    // writes the queued events before closing the stream
+    policyChangeStreams.stop();
+
+    String content = result.getResponse().getContentAsString();
+    assertThat(content, containsString("event:MonitorPolicyEvent"));
+    assertThat(content, containsString(policyId.toString()));
+    assertThat(content, not(containsString(otherPolicyId.toString())));
+  }
+
+  @Test
+  public void testStreamPolicyChanges_noTenants() throws Exception {
+    mvc.perform(get("/api/admin/policy/stream"))
+        .andExpect(status().isBadRequest());
+  }
+}
@@ -31,6 +31,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
 import com.rackspace.salus.telemetry.entities.TenantMetadata;
 import com.rackspace.salus.policy.manage.services.TenantManagement;
 import com.rackspace.salus.policy.manage.web.model.TenantMetadataCU;
@@ -55,7 +56,7 @@ import org.springframework.http.MediaType;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(TenantApiController.class)
-@Import({SimpleMeterRegistry.class})
+@Import({SimpleMeterRegistry.class, PolicyManagementMetrics.class})
 public class TenantApiControllerTest {
 
   // A timestamp to be used in tests that translates to "1970-01-02T03:46:40Z"
@@ -22,6 +22,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rackspace.salus.policy.manage.services.PolicyManagementMetrics;
 import com.rackspace.salus.policy.manage.services.TenantManagement;
 import com.rackspace.salus.telemetry.repositories.TenantMetadataRepository;
 import com.rackspace.salus.telemetry.web.TenantVerification;
@@ -39,7 +40,7 @@ import org.springframework.test.web.servlet.MockMvc;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(TenantApiController.class)
-@Import({SimpleMeterRegistry.class})
+@Import({SimpleMeterRegistry.class, PolicyManagementMetrics.class})
 /**
  * Tenant Verification is currently not used within Policy Management since only admin
  * api endpoints are available.
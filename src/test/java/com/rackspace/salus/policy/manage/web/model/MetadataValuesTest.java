@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Rackspace US, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rackspace.salus.policy.manage.web.model;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.rackspace.salus.telemetry.model.MetadataValueType;
+import java.time.Duration;
+import java.util.List;
+import org.junit.Test;
+
+public class MetadataValuesTest {
+
+  @Test
+  public void testParse() {
+    assertThat(MetadataValues.parse(MetadataValueType.STRING, "value"), equalTo("value"));
+    assertThat(MetadataValues.parse(MetadataValueType.STRING_LIST, "a, b ,c"),
+        equalTo(List.of("a", "b", "c")));
+    assertThat(MetadataValues.parse(MetadataValueType.INT, "42"), equalTo(42));
+    assertThat(MetadataValues.parse(MetadataValueType.DURATION, "PT30S"),
+        equalTo(Duration.ofSeconds(30)));
+    assertThat(MetadataValues.parse(MetadataValueType.BOOL, "TRUE"), equalTo(true));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testParse_listIsImmutable() {
+    @SuppressWarnings("unchecked")
+    List<String> zones = (List<String>) MetadataValues.parse(MetadataValueType.STRING_LIST, "a,b");
+    zones.add("c");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParse_invalidDuration() {
+    MetadataValues.parse(MetadataValueType.DURATION, "30 seconds");
+  }
+
+  @Test
+  public void testParseOrNull_invalid() {
+    assertThat(MetadataValues.parseOrNull(MetadataValueType.INT, "forty-two"), nullValue());
+    assertThat(MetadataValues.parseOrNull(MetadataValueType.BOOL, "yes"), nullValue());
+    assertThat(MetadataValues.parseOrNull(null, "value"), nullValue());
+  }
+}